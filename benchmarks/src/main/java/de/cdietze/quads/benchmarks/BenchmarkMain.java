@@ -0,0 +1,36 @@
+package de.cdietze.quads.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks like the JMH command line does, but always with the allocation profiler and, unless told
+ * otherwise, writes the results to {@code jmh-result.json} so that {@link CompareResults} can diff two runs.
+ */
+public class BenchmarkMain {
+
+    public static final String defaultResultFile = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers()) {
+            // Let JMH's own main deal with the informational options
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        boolean hasGcProfiler = false;
+        for (ProfilerConfig profiler : cmdOptions.getProfilers()) {
+            if (profiler.getKlass().equals(GCProfiler.class.getCanonicalName())) hasGcProfiler = true;
+        }
+        if (!hasGcProfiler) builder.addProfiler(GCProfiler.class);
+        if (!cmdOptions.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!cmdOptions.getResult().hasValue()) builder.result(defaultResultFile);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,121 @@
+package de.cdietze.quads.benchmarks;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JSON result files written by {@link BenchmarkMain}, e.g. from two commits, benchmark by benchmark.
+ * <p>
+ * Usage: {@code CompareResults old.json new.json [maxRegressionPercent]}. With a maximum regression it exits with
+ * status 1 if any score got worse by more than that, which lets a build fail on a slowdown. Scores are times per
+ * operation, so a higher score is worse.
+ */
+public class CompareResults {
+
+    /** The allocation profiler's bytes per operation, which older JMH versions named with a leading middle dot */
+    private static final String[] allocationRates = {"gc.alloc.rate.norm", "\u00b7gc.alloc.rate.norm"};
+
+    static final class Score {
+        final double score;
+        final String unit;
+        /** Bytes allocated per operation, NaN if the run had no allocation profiler */
+        final double allocated;
+
+        Score(double score, String unit, double allocated) {
+            this.score = score;
+            this.unit = unit;
+            this.allocated = allocated;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: CompareResults old.json new.json [maxRegressionPercent]");
+            System.exit(2);
+        }
+        Map<String, Score> before = read(args[0]);
+        Map<String, Score> after = read(args[1]);
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : Double.NaN;
+
+        Map<String, Void> keys = new LinkedHashMap<>();
+        for (String key : before.keySet()) keys.put(key, null);
+        for (String key : after.keySet()) keys.put(key, null);
+        int width = 9;
+        for (String key : keys.keySet()) width = Math.max(width, key.length());
+
+        System.out.println(String.format("%-" + width + "s %12s %12s %9s %12s %12s",
+                "Benchmark", "old", "new", "change", "old B/op", "new B/op"));
+        boolean regressed = false;
+        for (String key : keys.keySet()) {
+            Score old = before.get(key);
+            Score current = after.get(key);
+            double change = old != null && current != null ? (current.score - old.score) / old.score * 100 : Double.NaN;
+            String unit = current != null ? current.unit : old.unit;
+            System.out.println(String.format("%-" + width + "s %12s %12s %9s %12s %12s %s",
+                    key,
+                    old != null ? format(old.score) : "-",
+                    current != null ? format(current.score) : "-",
+                    Double.isNaN(change) ? "-" : String.format("%+.1f%%", change),
+                    old != null ? format(old.allocated) : "-",
+                    current != null ? format(current.allocated) : "-",
+                    unit));
+            if (!Double.isNaN(maxRegression) && change > maxRegression) regressed = true;
+        }
+        if (regressed) {
+            System.err.println("At least one benchmark regressed by more than " + maxRegression + "%");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the scores by benchmark name and parameters, sorted by them
+     */
+    static Map<String, Score> read(String path) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+            for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+                JsonObject run = element.getAsJsonObject();
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                double allocated = Double.NaN;
+                JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+                for (String allocationRate : allocationRates) {
+                    if (secondary != null && secondary.has(allocationRate)) {
+                        allocated = secondary.getAsJsonObject(allocationRate).get("score").getAsDouble();
+                    }
+                }
+                scores.put(key(run), new Score(
+                        primary.get("score").getAsDouble(), primary.get("scoreUnit").getAsString(), allocated));
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * @return e.g. {@code MoveBenchmark.engine(levelIndex=3)}
+     */
+    private static String key(JsonObject run) {
+        String benchmark = run.get("benchmark").getAsString();
+        String key = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        JsonObject params = run.getAsJsonObject("params");
+        if (params == null) return key;
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> param : params.entrySet()) {
+            sorted.put(param.getKey(), param.getValue().getAsString());
+        }
+        return key + sorted.toString().replace('{', '(').replace('}', ')');
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%.3f", value);
+    }
+}
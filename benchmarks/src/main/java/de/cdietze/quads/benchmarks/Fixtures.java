@@ -0,0 +1,96 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.MoveMask;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks.
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    /**
+     * A random walk of legal moves that never wins. If the worm gets stuck the walk goes on from the start, which is
+     * marked with a null entry.
+     */
+    static Direction[] randomWalk(Level level, int length, long seed) {
+        Random random = new Random(seed);
+        Direction[] directions = Direction.values();
+        Direction[] walk = new Direction[length];
+        Direction[] candidates = new Direction[directions.length];
+        Engine engine = new Engine(level);
+        for (int i = 0; i < length; i++) {
+            int mask = engine.moveMask();
+            int count = 0;
+            for (Direction dir : directions) {
+                // Only keep moves that do not end the walk by winning
+                if (MoveMask.isLegal(mask, dir) && !MoveMask.isWin(mask, dir)) candidates[count++] = dir;
+            }
+            if (count == 0) {
+                engine.reset();
+                walk[i] = null;
+            } else {
+                walk[i] = candidates[random.nextInt(count)];
+                engine.tryMove(walk[i]);
+            }
+        }
+        return walk;
+    }
+
+    /**
+     * @return a level of {@code width} by {@code height} fields, about a seventh of them walls, a tenth pushers and a
+     * twentieth expandos, and a door and a button of the same door link on every row. The width must be at least 2.
+     */
+    static Level randomLevel(int width, int height, long seed) {
+        Random random = new Random(seed);
+        char[][] rows = new char[height][width];
+        for (char[] row : rows) {
+            for (int x = 0; x < width; x++) {
+                int roll = random.nextInt(20);
+                row[x] = roll < 3 ? 'W' : roll < 5 ? 'P' : roll < 6 ? 'X' : '.';
+            }
+            row[random.nextInt(width / 2)] = 'a';
+            row[width / 2 + random.nextInt(width - width / 2)] = 'A';
+        }
+        rows[0][0] = 'S';
+        rows[height - 1][width - 1] = 'G';
+        StringBuilder sb = new StringBuilder();
+        for (char[] row : rows) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(row);
+        }
+        return new Level.Builder().title(width + "x" + height).read(sb.toString()).build();
+    }
+
+    /**
+     * @return the level in the format read by {@link Level.Builder#read}
+     */
+    static String text(Level level) {
+        char[][] rows = new char[level.dim.height()][level.dim.width()];
+        for (char[] row : rows) Arrays.fill(row, '.');
+        for (int fieldIndex : level.walls) set(rows, level, fieldIndex, 'W');
+        for (int fieldIndex : level.pushEntity) set(rows, level, fieldIndex, 'P');
+        for (int fieldIndex : level.expandoEntity) set(rows, level, fieldIndex, 'X');
+        for (int i = 0; i < level.doorLinks.size(); i++) {
+            for (int fieldIndex : level.doorLinks.get(i).doors) set(rows, level, fieldIndex, (char) ('A' + i));
+            for (int fieldIndex : level.doorLinks.get(i).buttons) set(rows, level, fieldIndex, (char) ('a' + i));
+        }
+        set(rows, level, level.playerStart, 'S');
+        set(rows, level, level.playerGoal, 'G');
+        StringBuilder sb = new StringBuilder();
+        for (char[] row : rows) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(row);
+        }
+        return sb.toString();
+    }
+
+    private static void set(char[][] rows, Level level, int fieldIndex, char c) {
+        rows[level.geometry().y(fieldIndex)][level.geometry().x(fieldIndex)] = c;
+    }
+}
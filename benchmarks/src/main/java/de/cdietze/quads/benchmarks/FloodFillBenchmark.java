@@ -0,0 +1,69 @@
+package de.cdietze.quads.benchmarks;
+
+import com.google.common.base.Predicate;
+import de.cdietze.quads.core.BitboardEngine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+import de.cdietze.quads.core.PointUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link PointUtils#expand} over all fields that are no wall, starting at the player's start, and of
+ * {@link PointUtils#neighbors} for every field of a level. {@link BitboardEngine#reachableFields} floods the start
+ * state with shifts instead, stopping at pushers, expandos and shut doors too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FloodFillBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    public int levelIndex;
+
+    private Level level;
+    private BitSet start;
+    private Predicate<Integer> isFree;
+    private BitboardEngine bitboard;
+    private final BitSet reachable = new BitSet();
+
+    @Setup
+    public void setUp() {
+        level = Levels.levels.get(levelIndex);
+        start = new BitSet();
+        start.set(level.playerStart);
+        final BitSet walls = new BitSet();
+        for (int fieldIndex : level.walls) walls.set(fieldIndex);
+        isFree = new Predicate<Integer>() {
+            @Override public boolean apply(Integer fieldIndex) { return !walls.get(fieldIndex); }
+        };
+        bitboard = new BitboardEngine(level);
+    }
+
+    @Benchmark
+    public BitSet expand() {
+        return PointUtils.expand(level.dim, start, isFree);
+    }
+
+    @Benchmark
+    public void neighbors(Blackhole blackhole) {
+        for (int fieldIndex = 0; fieldIndex < level.fieldCount; fieldIndex++) {
+            blackhole.consume(PointUtils.neighbors(level.dim, fieldIndex));
+        }
+    }
+
+    @Benchmark
+    public BitSet bitboard() {
+        return bitboard.reachableFields(reachable);
+    }
+}
@@ -0,0 +1,73 @@
+package de.cdietze.quads.benchmarks;
+
+import com.google.common.base.Predicate;
+import de.cdietze.quads.core.FloodFill;
+import de.cdietze.quads.core.PointUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pythagoras.i.Dimension;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flood fills of square boards of growing size with a tenth of the fields walled at random, starting in a corner. The
+ * time per fill divided by {@code size * size} stays flat as the fills are linear in the size of the region.
+ * {@link PointUtils#expand} adds boxing every field and a new fill per call on top of {@link FloodFill#fill}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FloodFillScalingBenchmark {
+
+    @Param({"16", "64", "256", "500"})
+    public int size;
+
+    private Dimension dim;
+    private final BitSet walls = new BitSet();
+    private final BitSet start = new BitSet();
+    private final BitSet region = new BitSet();
+    private FloodFill floodFill;
+    private FloodFill.FieldPredicate isFree;
+
+    @Setup
+    public void setUp() {
+        dim = new Dimension(size, size);
+        Random random = new Random(size);
+        for (int fieldIndex = 0; fieldIndex < size * size; fieldIndex++) {
+            if (random.nextInt(10) == 0) walls.set(fieldIndex);
+        }
+        walls.clear(0);
+        walls.clear(1);
+        walls.clear(size);
+        start.set(0);
+        floodFill = new FloodFill(dim);
+        isFree = new FloodFill.FieldPredicate() {
+            @Override public boolean test(int fieldIndex) { return !walls.get(fieldIndex); }
+        };
+    }
+
+    @Benchmark
+    public BitSet expand() {
+        return PointUtils.expand(dim, start, new Predicate<Integer>() {
+            @Override public boolean apply(Integer fieldIndex) { return !walls.get(fieldIndex); }
+        });
+    }
+
+    @Benchmark
+    public BitSet fill() {
+        return floodFill.fill(start, isFree, region);
+    }
+
+    @Benchmark
+    public BitSet scanline() {
+        return floodFill.scanline(start, isFree, region);
+    }
+}
@@ -0,0 +1,62 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+import de.cdietze.quads.core.MoveMask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link Engine#fork()} in the middle of a game on each built-in level, on its own and followed by a
+ * move on the fork as a search would make it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ForkBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    public int levelIndex;
+
+    private Engine engine;
+    private Direction move;
+
+    @Setup
+    public void setUp() {
+        Level level = Levels.levels.get(levelIndex);
+        engine = new Engine(level);
+        for (Direction dir : Fixtures.randomWalk(level, 32, levelIndex)) {
+            if (dir == null) {
+                engine.reset();
+            } else {
+                engine.tryMove(dir);
+            }
+        }
+        int mask = engine.moveMask();
+        for (Direction dir : Direction.values()) {
+            if (MoveMask.isLegal(mask, dir)) move = dir;
+        }
+    }
+
+    @Benchmark
+    public Engine fork() {
+        return engine.fork();
+    }
+
+    @Benchmark
+    public Engine forkAndMove() {
+        Engine fork = engine.fork();
+        fork.tryMove(move);
+        return fork;
+    }
+}
@@ -0,0 +1,38 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of {@link Level.Builder#read} and building the level, for the text of each built-in level.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LevelParseBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    public int levelIndex;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Fixtures.text(Levels.levels.get(levelIndex));
+    }
+
+    @Benchmark
+    public Level read() {
+        return new Level.Builder().title("Parsed").read(text).build();
+    }
+}
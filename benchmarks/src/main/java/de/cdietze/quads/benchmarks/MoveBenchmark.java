@@ -0,0 +1,98 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.BitboardEngine;
+import de.cdietze.quads.core.BoardState;
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of one move on each built-in level, replaying the same random walk on {@link BoardState}, on
+ * {@link Engine} and on {@link BitboardEngine}. The board is built before each replay, outside the measurement,
+ * unless the walk gets stuck and starts over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveBenchmark {
+
+    static final int walkLength = 512;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    public int levelIndex;
+
+    private Level level;
+    private Direction[] walk;
+    private Engine engine;
+    private BitboardEngine bitboard;
+    private BoardState state;
+
+    @Setup
+    public void setUp() {
+        level = Levels.levels.get(levelIndex);
+        walk = Fixtures.randomWalk(level, walkLength, levelIndex);
+        engine = new Engine(level);
+        bitboard = new BitboardEngine(level);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void newBoard() {
+        state = new BoardState(level);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(walkLength)
+    public BoardState boardState() {
+        BoardState state = this.state;
+        for (Direction dir : walk) {
+            if (dir == null) {
+                state = new BoardState(level);
+            } else {
+                state.tryMovePlayer(dir);
+            }
+        }
+        return state;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(walkLength)
+    public long engine() {
+        Engine engine = this.engine;
+        engine.reset();
+        for (Direction dir : walk) {
+            if (dir == null) {
+                engine.reset();
+            } else {
+                engine.tryMove(dir);
+            }
+        }
+        return engine.hash();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(walkLength)
+    public long bitboard() {
+        BitboardEngine bitboard = this.bitboard;
+        bitboard.reset();
+        for (Direction dir : walk) {
+            if (dir == null) {
+                bitboard.reset();
+            } else {
+                bitboard.tryMove(dir);
+            }
+        }
+        return bitboard.hash();
+    }
+}
@@ -0,0 +1,61 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.BoardState;
+import de.cdietze.quads.core.FieldOccupancy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the entities on every field of a generated square board, from 64 to 9216 fields. The scan is the
+ * {@code entitiesAt} of {@link BoardState} before it had a {@link FieldOccupancy}: a new list per field, filled by
+ * going through all entities. It grows with fields times entities, the index only with the fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OccupancyBenchmark {
+
+    @Param({"8", "24", "48", "96"})
+    public int size;
+
+    private BoardState state;
+
+    @Setup
+    public void setUp() {
+        state = new BoardState(Fixtures.randomLevel(size, size, size));
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (int fieldIndex = 0; fieldIndex < state.level.fieldCount; fieldIndex++) {
+            blackhole.consume(entitiesAt(fieldIndex));
+        }
+    }
+
+    @Benchmark
+    public void index(Blackhole blackhole) {
+        for (int fieldIndex = 0; fieldIndex < state.level.fieldCount; fieldIndex++) {
+            blackhole.consume(state.occupancy.movableAt(fieldIndex));
+            blackhole.consume(state.occupancy.fixedAt(fieldIndex));
+        }
+    }
+
+    private List<BoardState.Entity> entitiesAt(int fieldIndex) {
+        List<BoardState.Entity> result = new ArrayList<>();
+        for (BoardState.Entity entity : state.entities) {
+            if (entity.fieldIndex.get() == fieldIndex) result.add(entity);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.BitboardEngine;
+import de.cdietze.quads.core.BoardState;
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.StateSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of pushing a row of pushers one field, with the worm grown long enough to push the whole row. The worm
+ * first eats a row of expandos and walks around to the left of the pushers, which happens outside the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PushChainBenchmark {
+
+    static final int pushes = 24;
+
+    @Param({"1", "4", "8", "16"})
+    public int chainLength;
+
+    private Level level;
+    private Direction[] approach;
+    private StateSnapshot start;
+    private Engine engine;
+    private BitboardEngine bitboard;
+    private BoardState state;
+
+    @Setup
+    public void setUp() {
+        int width = chainLength + 1 + pushes;
+        level = new Level.Builder().title("Push chain").read(""
+                + "S" + repeat('X', chainLength) + repeat('.', width - chainLength - 1) + "\n"
+                + repeat('.', width) + "\n"
+                + "." + repeat('P', chainLength) + repeat('.', width - chainLength - 1) + "\n"
+                + repeat('.', width - 1) + "G").build();
+        // Eat the expandos, then go down and left along the second row to stand left of the pushers
+        approach = new Direction[2 * chainLength + 2];
+        int i = 0;
+        for (int x = 0; x < chainLength; x++) approach[i++] = Direction.RIGHT;
+        approach[i++] = Direction.DOWN;
+        for (int x = 0; x < chainLength; x++) approach[i++] = Direction.LEFT;
+        approach[i] = Direction.DOWN;
+        engine = new Engine(level);
+        for (Direction dir : approach) checkMove(engine.tryMove(dir));
+        start = engine.snapshot();
+        bitboard = new BitboardEngine(level);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void newBoard() {
+        state = new BoardState(level);
+        for (Direction dir : approach) checkMove(state.tryMovePlayer(dir));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(pushes)
+    public BoardState boardState() {
+        for (int i = 0; i < pushes; i++) state.tryMovePlayer(Direction.RIGHT);
+        return state;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(pushes)
+    public long engine() {
+        engine.restore(start);
+        for (int i = 0; i < pushes; i++) engine.tryMove(Direction.RIGHT);
+        return engine.hash();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(pushes)
+    public long bitboard() {
+        bitboard.restore(start);
+        for (int i = 0; i < pushes; i++) bitboard.tryMove(Direction.RIGHT);
+        return bitboard.hash();
+    }
+
+    private static void checkMove(boolean moved) {
+        if (!moved) throw new IllegalStateException("The approach to the pushers is blocked");
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) sb.append(c);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package de.cdietze.quads.benchmarks;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.LevelTextParser;
+import de.cdietze.quads.core.Levels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a text pack of the built-in levels, repeated {@code levelCount / 9} times, in one pass with
+ * {@link LevelTextParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextPackParseBenchmark {
+
+    @Param({"90", "9000"})
+    public int levelCount;
+
+    private String pack;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < levelCount; i++) {
+            Level level = Levels.levels.get(i % Levels.levels.size());
+            sb.append(level.title).append('\n').append(Fixtures.text(level)).append("\n\n");
+        }
+        pack = sb.toString();
+    }
+
+    @Benchmark
+    public List<Level> parse() {
+        return LevelTextParser.parse(pack);
+    }
+}
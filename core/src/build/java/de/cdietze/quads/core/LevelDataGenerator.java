@@ -0,0 +1,143 @@
+package de.cdietze.quads.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Compiles the built-in text level pack into the source of {@code LevelData}, the {@link LevelCatalog.Source} of the
+ * built-in levels. It knows the titles and numbers of the levels and creates each level straight from its field
+ * arrays, so that {@link Levels} loads without parsing on any platform, GWT included.
+ * <p>
+ * Runs in the generate-sources phase of the core build: {@code LevelDataGenerator <text pack> <source directory>}.
+ */
+public final class LevelDataGenerator {
+
+    private static final String className = "LevelData";
+    /** The name of the built-ins in {@link LevelCatalog} ids */
+    private static final String sourceName = "builtin";
+
+    private LevelDataGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) throw new IllegalArgumentException("Usage: LevelDataGenerator <text pack> <source directory>");
+        File pack = new File(args[0]);
+        String text = new String(Files.readAllBytes(pack.toPath()), StandardCharsets.UTF_8);
+        List<Level> levels;
+        try {
+            levels = LevelTextParser.parse(text);
+        } catch (LevelFormatException e) {
+            throw new IllegalArgumentException(pack + ": " + e.getMessage(), e);
+        }
+        File out = new File(args[1], LevelDataGenerator.class.getPackage().getName().replace('.', File.separatorChar));
+        if (!out.isDirectory() && !out.mkdirs()) throw new IOException("Cannot create " + out);
+        File file = new File(out, className + ".java");
+        String source = generate(pack.getName(), levels);
+        // Keep an unchanged file as it is, so that the compiler does not rebuild the module on every build
+        if (file.isFile() && new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).equals(source)) return;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(source);
+        }
+    }
+
+    static String generate(String source, List<Level> levels) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated from ").append(source).append(" by ").append(LevelDataGenerator.class.getSimpleName())
+                .append(", do not edit.\n");
+        sb.append("package ").append(LevelDataGenerator.class.getPackage().getName()).append(";\n\n");
+        sb.append("import pythagoras.i.Dimension;\n\n");
+        sb.append("import java.util.Arrays;\n");
+        sb.append("import java.util.Collections;\n\n");
+        sb.append("final class ").append(className).append(" implements LevelCatalog.Source {\n\n");
+        sb.append("    private static final String[] titles = {\n");
+        for (Level level : levels) {
+            sb.append("            ");
+            appendString(sb, level.title);
+            sb.append(",\n");
+        }
+        sb.append("    };\n\n");
+        sb.append("    /** Width, height, pusher, expando and door link count of each level */\n");
+        sb.append("    private static final int[] metadata = {\n");
+        for (Level level : levels) {
+            sb.append("            ").append(level.dim.width).append(", ").append(level.dim.height).append(", ")
+                    .append(level.pusherFields.length).append(", ").append(level.expandoFields.length).append(", ")
+                    .append(level.doorLinks.size()).append(",\n");
+        }
+        sb.append("    };\n\n");
+        sb.append("    @Override public String name() { return \"").append(sourceName).append("\"; }\n");
+        sb.append("    @Override public int size() { return titles.length; }\n");
+        sb.append("    @Override public String title(int index) { return titles[index]; }\n");
+        sb.append("    @Override public int width(int index) { return metadata[index * 5]; }\n");
+        sb.append("    @Override public int height(int index) { return metadata[index * 5 + 1]; }\n");
+        sb.append("    @Override public int pusherCount(int index) { return metadata[index * 5 + 2]; }\n");
+        sb.append("    @Override public int expandoCount(int index) { return metadata[index * 5 + 3]; }\n");
+        sb.append("    @Override public int doorLinkCount(int index) { return metadata[index * 5 + 4]; }\n");
+        sb.append("    @Override public int solutionLength(int index) { return -1; }\n\n");
+        sb.append("    @Override public Level level(int index) {\n");
+        sb.append("        Dimension dim = new Dimension(width(index), height(index));\n");
+        sb.append("        switch (index) {\n");
+        for (int index = 0; index < levels.size(); index++) {
+            Level level = levels.get(index);
+            sb.append("            case ").append(index).append(":\n");
+            sb.append("                return new Level(titles[index], dim, ").append(level.playerStart).append(", ")
+                    .append(level.playerGoal).append(",\n                        ");
+            appendFields(sb, level.wallFields);
+            sb.append(", ");
+            appendFields(sb, level.pusherFields);
+            sb.append(", ");
+            appendFields(sb, level.expandoFields);
+            sb.append(",\n                        ");
+            if (level.doorLinks.isEmpty()) {
+                sb.append("Collections.<Level.DoorLink>emptyList()");
+            } else {
+                sb.append("Arrays.asList(");
+                for (int i = 0; i < level.doorLinks.size(); i++) {
+                    Level.DoorLink doorLink = level.doorLinks.get(i);
+                    if (i > 0) sb.append(", ");
+                    sb.append("new Level.DoorLink(");
+                    appendFields(sb, doorLink.doorFields);
+                    sb.append(", ");
+                    appendFields(sb, doorLink.buttonFields);
+                    sb.append(")");
+                }
+                sb.append(")");
+            }
+            sb.append(");\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                throw new IndexOutOfBoundsException(\"No built-in level \" + index);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void appendFields(StringBuilder sb, int[] fields) {
+        sb.append("new int[]{");
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(fields[i]);
+        }
+        sb.append("}");
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ' || c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
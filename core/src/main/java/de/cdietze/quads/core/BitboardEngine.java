@@ -0,0 +1,352 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The rules of {@link Engine} over bitboards: walls, doors, buttons, pushers, expandos and the worm are each a
+ * {@code long[]} mask with one bit per field.
+ * <p>
+ * Every row gets one extra, always empty guard bit at its end, so field {@code (x, y)} is bit
+ * {@code x + y * (width + 1)}. Shifting a mask by one moves every field one step left or right and shifting it by
+ * {@code width + 1} one step up or down, while fields leaving a row land on a guard bit instead of wrapping into the
+ * next row. This turns door checks into a population count over the link's buttons and lets
+ * {@link #reachableFields} flood the whole board with a few shifts and ANDs per step.
+ * <p>
+ * Pushers and expandos have no ids here, which is all the difference to {@link Engine}: the same moves lead to states
+ * with the same {@link #hash()}.
+ */
+public final class BitboardEngine {
+
+    private static final int wordBits = 64;
+
+    public final Level level;
+    private final int width;
+    /** The number of bits per row, i.e. the width plus the guard bit */
+    private final int stride;
+    private final int words;
+    /** The bit of each field */
+    private final int[] bitOf;
+    /** The field of each bit, -1 for guard bits */
+    private final int[] fieldOf;
+
+    private final long[] inside;
+    private final long[] walls;
+    private final long[] doors;
+    private final long[] goal;
+    /** The doors and buttons of each door link */
+    private final long[][] linkDoors;
+    private final long[][] linkButtons;
+    private final int[] linkButtonCount;
+
+    private int head;
+    private final WormTail tail = new WormTail();
+    private boolean won;
+    private final long[] worm;
+    private final long[] pushers;
+    private final long[] expandos;
+    private int expandosLeft;
+    /** {@link Zobrist} hash of the pushers and remaining expandos */
+    private long pieceHash;
+
+    // Scratch space for reachableFields()
+    private final long[] passable;
+    private final long[] reach;
+    private final long[] next;
+
+    public BitboardEngine(Level level) {
+        this.level = level;
+        width = level.dim.width();
+        stride = width + 1;
+        int bits = stride * level.dim.height();
+        words = (bits + wordBits - 1) / wordBits;
+        bitOf = new int[level.fieldCount];
+        fieldOf = new int[words * wordBits];
+        Arrays.fill(fieldOf, -1);
+        inside = new long[words];
+        for (int fieldIndex = 0; fieldIndex < level.fieldCount; fieldIndex++) {
+            int bit = fieldIndex + fieldIndex / width;
+            bitOf[fieldIndex] = bit;
+            fieldOf[bit] = fieldIndex;
+            set(inside, bit);
+        }
+        walls = mask(level.wallFields);
+        doors = new long[words];
+        linkDoors = new long[level.doorLinks.size()][];
+        linkButtons = new long[level.doorLinks.size()][];
+        linkButtonCount = new int[level.doorLinks.size()];
+        for (int i = 0; i < level.doorLinks.size(); i++) {
+            Level.DoorLink doorLink = level.doorLinks.get(i);
+            linkDoors[i] = mask(doorLink.doorFields);
+            linkButtons[i] = mask(doorLink.buttonFields);
+            linkButtonCount[i] = doorLink.buttonFields.length;
+            or(doors, linkDoors[i]);
+        }
+        goal = new long[words];
+        set(goal, bitOf[level.playerGoal]);
+
+        worm = new long[words];
+        pushers = new long[words];
+        expandos = new long[words];
+        passable = new long[words];
+        reach = new long[words];
+        next = new long[words];
+        reset();
+    }
+
+    /**
+     * Puts the engine back into the level's start state.
+     */
+    public void reset() {
+        head = level.playerStart;
+        while (!tail.isEmpty()) tail.removeLast();
+        won = false;
+        clear(worm);
+        set(worm, bitOf[head]);
+        clear(pushers);
+        clear(expandos);
+        pieceHash = 0L;
+        for (int fieldIndex : level.pusherFields) {
+            set(pushers, bitOf[fieldIndex]);
+            pieceHash ^= Zobrist.pusher(fieldIndex);
+        }
+        for (int fieldIndex : level.expandoFields) {
+            set(expandos, bitOf[fieldIndex]);
+            pieceHash ^= Zobrist.expando(fieldIndex);
+        }
+        expandosLeft = level.expandoFields.length;
+    }
+
+    /**
+     * Puts the engine into the state of {@code snapshot}, which must have been taken from a board of the same level.
+     */
+    public void restore(StateSnapshot snapshot) {
+        head = snapshot.head(level);
+        while (!tail.isEmpty()) tail.removeLast();
+        clear(worm);
+        set(worm, bitOf[head]);
+        for (int i = snapshot.tailSize(level) - 1; i >= 0; --i) {
+            int fieldIndex = snapshot.tailSegment(level, i);
+            tail.addFirst(fieldIndex);
+            set(worm, bitOf[fieldIndex]);
+        }
+        clear(pushers);
+        pieceHash = 0L;
+        for (int id = 0; id < level.pusherFields.length; id++) {
+            int fieldIndex = snapshot.pusherField(level, id);
+            set(pushers, bitOf[fieldIndex]);
+            pieceHash ^= Zobrist.pusher(fieldIndex);
+        }
+        clear(expandos);
+        expandosLeft = 0;
+        int[] expandoFields = level.expandoFields;
+        for (int id = 0; id < expandoFields.length; id++) {
+            if (!snapshot.hasExpando(level, id)) continue;
+            set(expandos, bitOf[expandoFields[id]]);
+            pieceHash ^= Zobrist.expando(expandoFields[id]);
+            ++expandosLeft;
+        }
+        won = head == level.playerGoal;
+    }
+
+    public int head() { return head; }
+
+    /**
+     * The worm's tail. Must not be modified from the outside.
+     */
+    public WormTail tail() { return tail; }
+
+    public boolean hasWon() { return won; }
+
+    public int expandosLeft() { return expandosLeft; }
+
+    /**
+     * @return the {@link Zobrist} hash of the current state, equal to {@link Engine#hash()} after the same moves
+     */
+    public long hash() { return pieceHash ^ Zobrist.head(head) ^ tail.hash(); }
+
+    public boolean isPusherAt(int fieldIndex) { return get(pushers, bitOf[fieldIndex]); }
+
+    public boolean isExpandoAt(int fieldIndex) { return get(expandos, bitOf[fieldIndex]); }
+
+    /**
+     * @return whether the worm or a pusher is on the field
+     */
+    public boolean isOccupied(int fieldIndex) { return isOccupiedBit(bitOf[fieldIndex]); }
+
+    public boolean isDoorOpen(int fieldIndex) {
+        int bit = bitOf[fieldIndex];
+        if (!get(doors, bit)) return false;
+        return isOccupiedBit(bit) || isLinkPressed(linkOf(bit));
+    }
+
+    /**
+     * @return whether the player moved
+     */
+    public boolean tryMove(Direction dir) {
+        if (won) return false;
+        if (!canMove(dir)) return false;
+        move(dir);
+        return true;
+    }
+
+    public boolean canMove(Direction dir) {
+        int step = step(dir);
+        int bit = neighbor(bitOf[head], step);
+        if (bit < 0) return false;
+        // Walk the chain of pushers in front of the head, each one costs one power
+        int power = tail.size() + 1;
+        boolean isPlayer = true;
+        while (true) {
+            if (get(walls, bit)) return false;
+            if (get(doors, bit) && !isOccupiedBit(bit) && !isLinkPressed(linkOf(bit))) return false;
+            if (get(expandos, bit)) return isPlayer;
+            if (!get(pushers, bit)) return true;
+            if (power <= 0) return false;
+            bit = neighbor(bit, step);
+            if (bit < 0) return false;
+            // We may not push onto the players tail, the head is behind the chain
+            if (get(worm, bit)) return false;
+            --power;
+            isPlayer = false;
+        }
+    }
+
+    private void move(Direction dir) {
+        int step = step(dir);
+        int targetBit = neighbor(bitOf[head], step);
+        int target = fieldOf[targetBit];
+        boolean isFreshHead = !tail.contains(target);
+
+        if (get(pushers, targetBit)) {
+            // Moving a row of pushers by one field only changes its two ends
+            int end = targetBit;
+            while (get(pushers, end)) end += step;
+            clearBit(pushers, targetBit);
+            set(pushers, end);
+            pieceHash ^= Zobrist.pusher(target) ^ Zobrist.pusher(fieldOf[end]);
+        }
+        boolean ate = get(expandos, targetBit);
+        if (ate) {
+            clearBit(expandos, targetBit);
+            --expandosLeft;
+            pieceHash ^= Zobrist.expando(target);
+        }
+        if (get(goal, targetBit)) won = true;
+
+        tail.remove(target);
+        tail.addFirst(head);
+        head = target;
+        set(worm, targetBit);
+
+        if (!isFreshHead || ate) return;
+        clearBit(worm, bitOf[tail.removeLast()]);
+    }
+
+    /**
+     * Floods the board from the head over fields the worm could walk onto without pushing or eating anything: no walls,
+     * pushers, expandos, tail or doors that are shut right now.
+     *
+     * @return {@code result}, cleared and holding the head and the fields it can reach
+     */
+    public BitSet reachableFields(BitSet result) {
+        for (int i = 0; i < words; i++) passable[i] = inside[i] & ~(walls[i] | pushers[i] | expandos[i] | worm[i]);
+        for (int link = 0; link < linkDoors.length; link++) {
+            if (isLinkPressed(link)) continue;
+            long[] shut = linkDoors[link];
+            for (int i = 0; i < words; i++) passable[i] &= ~shut[i];
+        }
+        clear(reach);
+        set(reach, bitOf[head]);
+        boolean grown = true;
+        while (grown) {
+            for (int i = 0; i < words; i++) next[i] = reach[i];
+            shiftOr(reach, 1, next);
+            shiftOr(reach, -1, next);
+            shiftOr(reach, stride, next);
+            shiftOr(reach, -stride, next);
+            grown = false;
+            for (int i = 0; i < words; i++) {
+                long grownWord = (next[i] & passable[i]) | reach[i];
+                if (grownWord != reach[i]) grown = true;
+                reach[i] = grownWord;
+            }
+        }
+        result.clear();
+        for (int i = 0; i < words; i++) {
+            for (long word = reach[i]; word != 0; word &= word - 1) {
+                result.set(fieldOf[i * wordBits + Long.numberOfTrailingZeros(word)]);
+            }
+        }
+        return result;
+    }
+
+    private boolean isOccupiedBit(int bit) { return get(worm, bit) || get(pushers, bit); }
+
+    /**
+     * @return whether the worm and pushers hold down all buttons of the door link
+     */
+    private boolean isLinkPressed(int link) {
+        long[] buttons = linkButtons[link];
+        int pressed = 0;
+        for (int i = 0; i < words; i++) pressed += Long.bitCount(buttons[i] & (worm[i] | pushers[i]));
+        return pressed == linkButtonCount[link];
+    }
+
+    private int linkOf(int doorBit) {
+        for (int link = 0; ; link++) {
+            if (get(linkDoors[link], doorBit)) return link;
+        }
+    }
+
+    private int step(Direction dir) { return dir.x() + dir.y() * stride; }
+
+    /**
+     * @return the bit {@code step} away from {@code bit} or -1 if that is off the board
+     */
+    private int neighbor(int bit, int step) {
+        int result = bit + step;
+        return result >= 0 && result < fieldOf.length && fieldOf[result] >= 0 ? result : -1;
+    }
+
+    /**
+     * ORs {@code src} shifted towards higher bits by {@code shift}, or lower bits if negative, into {@code dst}.
+     */
+    private void shiftOr(long[] src, int shift, long[] dst) {
+        int wordShift = Math.abs(shift) / wordBits;
+        int bitShift = Math.abs(shift) % wordBits;
+        if (shift > 0) {
+            for (int i = words - 1; i >= wordShift; --i) {
+                long word = src[i - wordShift] << bitShift;
+                if (bitShift != 0 && i - wordShift - 1 >= 0) word |= src[i - wordShift - 1] >>> (wordBits - bitShift);
+                dst[i] |= word;
+            }
+        } else {
+            for (int i = 0; i + wordShift < words; i++) {
+                long word = src[i + wordShift] >>> bitShift;
+                if (bitShift != 0 && i + wordShift + 1 < words) word |= src[i + wordShift + 1] << (wordBits - bitShift);
+                dst[i] |= word;
+            }
+        }
+    }
+
+    private long[] mask(int[] fields) {
+        long[] mask = new long[words];
+        for (int fieldIndex : fields) set(mask, bitOf[fieldIndex]);
+        return mask;
+    }
+
+    private static boolean get(long[] mask, int bit) { return (mask[bit >>> 6] & (1L << bit)) != 0; }
+
+    private static void set(long[] mask, int bit) { mask[bit >>> 6] |= 1L << bit; }
+
+    private static void clearBit(long[] mask, int bit) { mask[bit >>> 6] &= ~(1L << bit); }
+
+    private static void clear(long[] mask) {
+        Arrays.fill(mask, 0L);
+    }
+
+    private static void or(long[] mask, long[] other) {
+        for (int i = 0; i < mask.length; i++) mask[i] |= other[i];
+    }
+}
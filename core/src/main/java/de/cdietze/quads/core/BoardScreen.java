@@ -22,14 +22,13 @@ import tripleplay.util.Layers;
 import java.util.ArrayList;
 import java.util.List;
 
-import static de.cdietze.quads.core.PointUtils.toX;
-import static de.cdietze.quads.core.PointUtils.toY;
-
 public class BoardScreen extends Screen {
 
     private static final float fieldGapWidth = 0.03f;
     private static final Dimension maxSize = new Dimension(1200, 800);
     private static final float maxDialogWidth = 400f;
+    /** The number of moves Page Up and Page Down jump over */
+    private static final int scrubStep = 10;
 
     private interface Depths {
         float fields = -1f;
@@ -45,6 +44,7 @@ public class BoardScreen extends Screen {
     public final MainGame game;
     private final Sprites sprites;
     private final BoardState state;
+    private final Timeline timeline;
 
     private Optional<DialogKeeper.Dialog> escapeDialog = Optional.absent();
 
@@ -53,6 +53,7 @@ public class BoardScreen extends Screen {
         this.game = game;
         this.sprites = new Sprites(this);
         this.state = new BoardState(level);
+        this.timeline = new Timeline(level);
     }
 
     @Override
@@ -76,6 +77,7 @@ public class BoardScreen extends Screen {
         public final GroupLayer rootLayer = new GroupLayer();
         private final GroupLayer gridLayer = new GroupLayer();
         private final Level level = state.level;
+        private final LevelGeometry geometry = level.geometry();
 
         public Board() {
             rootLayer.setSize(level.dim.width(), level.dim.height()).setOrigin(Layer.Origin.CENTER);
@@ -115,15 +117,15 @@ public class BoardScreen extends Screen {
         private Layer createPlayerLayer(BoardState.PlayerEntity player) {
             final GroupLayer group = new GroupLayer();
             final List<Layer> layers = new ArrayList<>();
-            player.tail.connectNotify(new RList.Listener<Integer>() {
-                @Override public void onAdd(int index, Integer fieldIndex) {
-                    int x = toX(level.dim, fieldIndex);
-                    int y = toY(level.dim, fieldIndex);
+            player.tail.connectNotify(new WormTail.Listener() {
+                @Override public void onAdd(int index, int fieldIndex) {
+                    int x = geometry.x(fieldIndex);
+                    int y = geometry.y(fieldIndex);
                     Layer layer = sprites.createTailLayer();
                     group.addAt(layer, x, y);
                     layers.add(index, layer);
                 }
-                @Override public void onRemove(int index, Integer fieldIndex) {
+                @Override public void onRemove(int index, int fieldIndex) {
                     layers.remove(index).close();
                 }
             });
@@ -133,8 +135,8 @@ public class BoardScreen extends Screen {
             group.setDepth(Depths.player);
             player.fieldIndex.connectNotify(new Slot<Integer>() {
                 @Override public void onEmit(Integer headFieldIndex) {
-                    int x = toX(level.dim, headFieldIndex);
-                    int y = toY(level.dim, headFieldIndex);
+                    int x = geometry.x(headFieldIndex);
+                    int y = geometry.y(headFieldIndex);
                     headLayer.setTranslation(x, y);
                 }
             });
@@ -166,6 +168,25 @@ public class BoardScreen extends Screen {
                         case S:
                             tryMove(Direction.DOWN);
                             break;
+                        case Z:
+                        case BACKSPACE:
+                            undo();
+                            break;
+                        case Y:
+                            redo();
+                            break;
+                        case PAGE_UP:
+                            scrubTo(Math.max(0, timeline.position() - scrubStep));
+                            break;
+                        case PAGE_DOWN:
+                            scrubTo(Math.min(timeline.size(), timeline.position() + scrubStep));
+                            break;
+                        case HOME:
+                            scrubTo(0);
+                            break;
+                        case END:
+                            scrubTo(timeline.size());
+                            break;
                         case ESCAPE:
                             toggleEscapeDialog();
                             break;
@@ -178,20 +199,51 @@ public class BoardScreen extends Screen {
         }
 
         private void tryMove(Direction dir) {
-            if (!state.tryMovePlayer(dir)) {
+            if (state.tryMovePlayer(dir)) {
+                timeline.record(dir, state);
+            } else {
                 cannotMove.play();
             }
         }
 
+        private void undo() {
+            if (state.undo()) {
+                timeline.back();
+            } else if (timeline.position() > 0) {
+                // The board forgets its moves when the timeline restores it
+                scrubTo(timeline.position() - 1);
+            } else {
+                cannotMove.play();
+            }
+        }
+
+        private void redo() {
+            if (state.redo()) {
+                timeline.forward();
+            } else if (timeline.position() < timeline.size()) {
+                scrubTo(timeline.position() + 1);
+            } else {
+                cannotMove.play();
+            }
+        }
+
+        /**
+         * Jumps to the state after {@code move} moves of the session, keeping the layers.
+         */
+        private void scrubTo(int move) {
+            if (move == timeline.position()) return;
+            state.restore(timeline.seek(move));
+        }
+
         private void initWinListener() {
             state.playerWon.connectNotify(new Slot<Boolean>() {
                 @Override public void onEmit(Boolean won) {
                     if (!won) return;
                     goalReached.play();
-                    final int levelIndex = Levels.levels.indexOf(level);
-                    if (levelIndex >= 0 && levelIndex + 1 < Levels.levels.size()) {
+                    Level next = Levels.catalog.next(level);
+                    if (next != null) {
                         // Move silently on to the next level
-                        game.screens.replace(new BoardScreen(game, Levels.levels.get(levelIndex + 1)));
+                        game.screens.replace(new BoardScreen(game, next));
                         return;
                     }
                     Group group = UiUtils.createDialogGroup(plat);
@@ -217,7 +269,9 @@ public class BoardScreen extends Screen {
             group.add(new Button("Restart").onClick(new Slot<Button>() {
                 @Override
                 public void onEmit(Button event) {
-                    game.screens.replace(new BoardScreen(game, level));
+                    // Jumping back to the start keeps the layers, the moves can still be made again
+                    scrubTo(0);
+                    toggleEscapeDialog();
                 }
             }));
             group.add(new Button("Main Menu").onClick(new Slot<Button>() {
@@ -314,8 +368,8 @@ public class BoardScreen extends Screen {
         private Slot<Integer> moveLayerWithFieldIndexSlot(final Layer layer) {
             return new Slot<Integer>() {
                 @Override public void onEmit(Integer fieldIndex) {
-                    int x = toX(level.dim, fieldIndex);
-                    int y = toY(level.dim, fieldIndex);
+                    int x = geometry.x(fieldIndex);
+                    int y = geometry.y(fieldIndex);
                     layer.setTranslation(x, y);
                 }
             };
@@ -323,13 +377,13 @@ public class BoardScreen extends Screen {
 
         private void createFieldLayers() {
             for (int fieldIndex = 0; fieldIndex < level.fieldCount; ++fieldIndex) {
-                if (state.level.walls.contains(fieldIndex)) {
+                if (level.cell(fieldIndex) == Level.WALL) {
                     // Walls are gaps
                     continue;
                 }
                 Layer fieldLayer = BoardScreen.createFieldLayer(fieldIndex).setDepth(Depths.fields);
-                int x = toX(level.dim, fieldIndex);
-                int y = toY(level.dim, fieldIndex);
+                int x = geometry.x(fieldIndex);
+                int y = geometry.y(fieldIndex);
                 gridLayer.addAt(fieldLayer, x, y);
             }
         }
@@ -1,25 +1,21 @@
 package de.cdietze.quads.core;
 
-import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Iterables;
-import pythagoras.i.Point;
 import react.*;
 import tripleplay.util.Logger;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
 import static com.google.common.base.Preconditions.checkState;
-import static de.cdietze.quads.core.PointUtils.*;
 
 public class BoardState {
     public static final Logger log = new Logger("state");
 
+    private static final Direction[] directions = Direction.values();
+
     public static abstract class Entity {
         enum Type {
             PLAYER, WALL, PUSHER, EXPANDO, DOOR, BUTTON, GOAL;
@@ -27,6 +23,9 @@ public class BoardState {
 
         public final Type type;
         public final IntValue fieldIndex;
+        /** The field under which {@link FieldOccupancy} has indexed this entity, -1 if it is not on the board */
+        int indexedField = -1;
+        Slot<Integer> occupancySlot;
 
         public Entity(Type type, int initialFieldIndex) {
             this.type = type;
@@ -62,7 +61,7 @@ public class BoardState {
          * The field indexes that make up the worm.
          * The order is its age. I.e., the last element is the next to be removed.
          */
-        public final RList<Integer> tail = RList.create();
+        public final WormTail tail = new WormTail();
     }
 
     public class WallEntity extends Entity {
@@ -74,33 +73,11 @@ public class BoardState {
         public PusherEntity(int initialFieldIndex) {
             super(Type.PUSHER, initialFieldIndex);
         }
-        @Override public boolean canEnter(Entity e, Direction dir, int power) {
-            if (power <= 0) return false;
-            Point targetPos = toPoint(level.dim, fieldIndex.get(), tmp).addLocal(dir.x(), dir.y());
-            if (!level.rect.contains(targetPos)) return false;
-            int targetFieldIndex = toIndex(level.dim, targetPos);
-            // We may not step on the players tail
-            if (playerEntity.tail.contains(targetFieldIndex)) return false;
-            List<Entity> targetEntities = entitiesAt(toIndex(level.dim, targetPos));
-            for (Entity targetEntity : targetEntities) {
-                if (!targetEntity.canEnter(this, dir, power - 1)) return false;
-            }
-            return true;
-        }
-        @Override public void beforeEntityEnters(Entity e, Direction dir) {
-            super.beforeEntityEnters(e, dir);
-            for (Entity targetEntity : entitiesAt(fieldIndex.get())) {
-                if (targetEntity == this) continue;
-                targetEntity.afterEntityLeft(this);
-            }
-            int moveOffset = toIndex(level.dim, dir.x(), dir.y());
-            // We move the other entities before moving ourself to avoid overlaps
-            int targetFieldIndex = fieldIndex.get() + moveOffset;
-            for (Entity targetEntity : entitiesAt(targetFieldIndex)) {
-                targetEntity.beforeEntityEnters(this, dir);
-            }
-            fieldIndex.increment(moveOffset);
-        }
+        /**
+         * Only checks the power this pusher needs, the fields behind it are checked by {@link BoardState#moveBlocker}
+         * and it is moved by {@link BoardState#tryMovePlayer}, which handle whole rows of pushers at once.
+         */
+        @Override public boolean canEnter(Entity e, Direction dir, int power) { return power > 0; }
     }
 
     public class ExpandoEntity extends Entity {
@@ -120,28 +97,30 @@ public class BoardState {
     public class DoorEntity extends Entity {
 
         public final int doorLinkIndex;
+        /** Whether all buttons of the door link are down or something is in the door */
         public final Value<Boolean> isOpen = Value.create(false);
-        private final Value<Boolean> isOccupied = Value.create(false);
+        private boolean isOccupied;
 
-        public DoorEntity(int doorLinkIndex, int initialFieldIndex, Collection<ButtonEntity> buttons) {
+        public DoorEntity(int doorLinkIndex, int initialFieldIndex) {
             super(Type.DOOR, initialFieldIndex);
             this.doorLinkIndex = doorLinkIndex;
-            ValueView<Boolean> allButtonsDown = Values.and(Collections2.transform(buttons, new Function<ButtonEntity, ValueView<Boolean>>() {
-                @Override public ValueView<Boolean> apply(ButtonEntity buttonEntity) {
-                    return buttonEntity.isDown;
-                }
-            }));
-            Values.or(allButtonsDown, isOccupied).connectNotify(isOpen.slot());
+            updateOpen();
         }
         @Override public boolean canEnter(Entity e, Direction dir, int power) { return isOpen.get(); }
         @Override public void beforeEntityEnters(Entity e, Direction dir) {
             super.beforeEntityEnters(e, dir);
-            isOccupied.update(true);
+            setOccupied(true);
         }
         @Override public void afterEntityLeft(Entity e) {
             super.afterEntityLeft(e);
-            isOccupied.update(false);
+            setOccupied(false);
+        }
+        boolean isOccupied() { return isOccupied; }
+        void setOccupied(boolean occupied) {
+            isOccupied = occupied;
+            updateOpen();
         }
+        private void updateOpen() { isOpen.update(isOccupied || isLinkDown(doorLinkIndex)); }
     }
 
     public class ButtonEntity extends Entity {
@@ -156,11 +135,17 @@ public class BoardState {
         @Override public boolean canEnter(Entity e, Direction dir, int power) { return true; }
         @Override public void beforeEntityEnters(Entity e, Direction dir) {
             super.beforeEntityEnters(e, dir);
-            isDown.update(true);
+            setDown(true);
         }
         @Override public void afterEntityLeft(Entity e) {
             super.afterEntityLeft(e);
-            isDown.update(false);
+            setDown(false);
+        }
+        void setDown(boolean down) {
+            if (isDown.get() == down) return;
+            // The doors are updated before anyone listening to the button hears of it
+            pressButton(doorLinkIndex, down ? 1 : -1);
+            isDown.update(down);
         }
     }
 
@@ -183,14 +168,58 @@ public class BoardState {
     }
 
     public final Level level;
+    private final LevelGeometry geometry;
     public final RList<Entity> entities = RList.create();
+    public final FieldOccupancy occupancy;
     public final PlayerEntity playerEntity;
     public final Value<Boolean> playerWon = new Value<>(false);
     public final Signal<ExpandoEntity> expandoConsumed = new Signal<>();
     public final Signal<PusherEntity> playerPushes = new Signal<>();
 
+    /** What keeps the player from moving, see {@link #moveBlocker} */
+    public enum Blocker {
+        /** The level is won already */
+        WON,
+        /** The move leaves the board or pushes a pusher off it */
+        EDGE,
+        WALL,
+        /** A shut door */
+        DOOR,
+        /** A pusher would be pushed onto an expando, which only the player can enter */
+        EXPANDO,
+        /** A pusher would be pushed onto the player's tail */
+        TAIL,
+        /** The row of pushers is longer than the worm */
+        POWER
+    }
+
+    // The door links, see pressButton()
+    private final int[] linkButtonCount;
+    private final int[] linkPressed;
+    private final DoorEntity[][] linkDoors;
+
+    // The row of pushers found by the last scan, see scanMove()
+    private final PusherEntity[] pushChain;
+    private int pushCount;
+
+    // The pieces in the order of the level, see restore()
+    private final PusherEntity[] pushers;
+    private final ExpandoEntity[] expandos;
+
+    // The moves that can be taken back, see undo()
+    private final MoveJournal journal = new MoveJournal();
+    private final List<ExpandoEntity> eatenExpandos = new ArrayList<>();
+
     public BoardState(Level level) {
         this.level = Objects.requireNonNull(level);
+        geometry = level.geometry();
+        occupancy = new FieldOccupancy(level.fieldCount);
+        occupancy.track(entities);
+        pushChain = new PusherEntity[level.pushEntity.size()];
+        int linkCount = level.doorLinks.size();
+        linkButtonCount = new int[linkCount];
+        linkPressed = new int[linkCount];
+        linkDoors = new DoorEntity[linkCount][];
 
         playerEntity = new PlayerEntity(level.playerStart);
 
@@ -198,84 +227,328 @@ public class BoardState {
             entities.add(new WallEntity(fieldIndex));
         }
 
-        for (int fieldIndex : level.pushEntity) {
-            entities.add(new PusherEntity(fieldIndex));
+        pushers = new PusherEntity[level.pushEntity.size()];
+        for (int i = 0; i < pushers.length; i++) {
+            pushers[i] = new PusherEntity(level.pushEntity.get(i));
+            entities.add(pushers[i]);
         }
-        for (Integer fieldIndex : level.expandoEntity) {
-            entities.add(new ExpandoEntity(fieldIndex));
+        expandos = new ExpandoEntity[level.expandoEntity.size()];
+        for (int i = 0; i < expandos.length; i++) {
+            expandos[i] = new ExpandoEntity(level.expandoEntity.get(i));
+            entities.add(expandos[i]);
         }
 
-        for (int i = 0; i < level.doorLinks.size(); i++) {
+        for (int i = 0; i < linkCount; i++) {
             Level.DoorLink doorLink = level.doorLinks.get(i);
+            linkButtonCount[i] = doorLink.buttons.size();
             List<ButtonEntity> buttons = new ArrayList<>();
             for (int fieldIndex : doorLink.buttons) {
                 buttons.add(new ButtonEntity(i, fieldIndex));
             }
             entities.addAll(buttons);
-            for (int fieldIndex : doorLink.doors) {
-                entities.add(new DoorEntity(i, fieldIndex, buttons));
+            linkDoors[i] = new DoorEntity[doorLink.doors.size()];
+            for (int j = 0; j < linkDoors[i].length; j++) {
+                linkDoors[i][j] = new DoorEntity(i, doorLink.doors.get(j));
+                entities.add(linkDoors[i][j]);
             }
         }
         entities.add(new GoalEntity(level.playerGoal));
     }
 
+    /**
+     * @return whether all buttons of the door link are down
+     */
+    public boolean isLinkDown(int doorLinkIndex) {
+        return linkPressed[doorLinkIndex] == linkButtonCount[doorLinkIndex];
+    }
+
+    /**
+     * Counts a button of the door link going down or, with {@code delta} -1, up, and lets the link's doors know when
+     * that opens or shuts the link. A button change costs the same however many links and buttons the level has.
+     */
+    private void pressButton(int doorLinkIndex, int delta) {
+        boolean wasDown = isLinkDown(doorLinkIndex);
+        linkPressed[doorLinkIndex] += delta;
+        if (isLinkDown(doorLinkIndex) == wasDown) return;
+        for (DoorEntity door : linkDoors[doorLinkIndex]) door.updateOpen();
+    }
+
+    /**
+     * @return the {@link Zobrist} hash of the current state, kept up to date by every move
+     */
+    public long hash() {
+        return occupancy.movableHash() ^ Zobrist.head(playerEntity.fieldIndex.get()) ^ playerEntity.tail.hash();
+    }
+
+    /**
+     * @return a packed copy of the current state
+     */
+    public StateSnapshot snapshot() { return StateSnapshot.of(this); }
+
+    /**
+     * Puts the board into the state of {@code snapshot}, which must have been taken from a board of the same level.
+     * Only what differs is changed and every value and list involved fires as it changes, so views follow along as
+     * they do for a move. The moves that {@link #undo} and {@link #redo} know of led to the old state and are dropped.
+     */
+    public void restore(StateSnapshot snapshot) {
+        journal.clear();
+        eatenExpandos.clear();
+        WormTail tail = playerEntity.tail;
+        while (!tail.isEmpty()) tail.removeLast();
+        playerEntity.fieldIndex.update(snapshot.head(level));
+        for (int i = snapshot.tailSize(level) - 1; i >= 0; --i) tail.addFirst(snapshot.tailSegment(level, i));
+        // Eaten expandos go first, a pusher may have been pushed onto one's field since
+        for (int i = 0; i < expandos.length; i++) {
+            boolean present = occupancy.movableAt(expandos[i].fieldIndex.get()) == expandos[i];
+            if (present && !snapshot.hasExpando(level, i)) entities.remove(expandos[i]);
+        }
+        // Pushers are interchangeable: those on a field of the snapshot stay, the others move to the remaining fields
+        BitSet targets = new BitSet(level.fieldCount);
+        for (int i = 0; i < pushers.length; i++) targets.set(snapshot.pusherField(level, i));
+        List<PusherEntity> moving = new ArrayList<>();
+        for (PusherEntity pusher : pushers) {
+            int fieldIndex = pusher.fieldIndex.get();
+            if (targets.get(fieldIndex)) {
+                targets.clear(fieldIndex);
+            } else {
+                moving.add(pusher);
+            }
+        }
+        int target = targets.nextSetBit(0);
+        for (PusherEntity pusher : moving) {
+            pusher.fieldIndex.update(target);
+            target = targets.nextSetBit(target + 1);
+        }
+        for (int i = 0; i < expandos.length; i++) {
+            boolean present = occupancy.movableAt(expandos[i].fieldIndex.get()) == expandos[i];
+            if (!present && snapshot.hasExpando(level, i)) entities.add(expandos[i]);
+        }
+        // Buttons before doors, so no door opens or shuts on its way to the new state
+        for (Level.DoorLink doorLink : level.doorLinks) {
+            for (int fieldIndex : doorLink.buttons) updateFixedEntity(fieldIndex);
+        }
+        for (DoorEntity[] doors : linkDoors) {
+            for (DoorEntity door : doors) updateFixedEntity(door.fieldIndex.get());
+        }
+        playerWon.update(playerEntity.fieldIndex.get() == level.playerGoal);
+    }
+
+    /**
+     * The board itself is not copied, its entities and values are made for showing a single game.
+     *
+     * @return an {@link Engine} in the current state, to try moves on without touching the board
+     */
+    public Engine fork() {
+        Engine engine = new Engine(level);
+        engine.restore(snapshot());
+        return engine;
+    }
+
     /**
      * @return whether the player moved
      */
     public boolean tryMovePlayer(Direction dir) {
         if (playerWon.get()) return false;
         if (!canMovePlayer(dir)) return false;
-        movePlayer(dir);
+        movePlayer(dir, false);
         return true;
     }
 
-    private boolean canMovePlayer(Direction dir) {
-        Point pos = toPoint(level.dim, playerEntity.fieldIndex.get()).addLocal(dir.x(), dir.y());
-        if (!level.rect.contains(pos)) return false;
-        List<Entity> targets = entitiesAt(toIndex(level.dim, pos));
-        for (Entity target : targets) {
-            if (!target.canEnter(playerEntity, dir, playerEntity.tail.size() + 1)) return false;
+    /**
+     * @return the number of moves that {@link #undo} can take back
+     */
+    public int undoCount() { return journal.undoCount(); }
+
+    /**
+     * @return the number of taken back moves that {@link #redo} can make again
+     */
+    public int redoCount() { return journal.redoCount(); }
+
+    /**
+     * Takes back the last move made by {@link #tryMovePlayer} or {@link #redo}. Only the fields the move changed are
+     * touched and every value and list involved fires as it changes, so views follow along. The move can be made again
+     * by {@link #redo} until a new move is made.
+     *
+     * @return whether there was a move to take back
+     */
+    public boolean undo() {
+        if (journal.undoCount() == 0) return false;
+        int entry = journal.undo();
+        Direction dir = directions[journal.direction(entry)];
+        int target = playerEntity.fieldIndex.get();
+        int oldHead = journal.oldHead(entry);
+        int removedTailField = journal.removedTailField(entry);
+        WormTail tail = playerEntity.tail;
+        if (removedTailField >= 0) tail.add(tail.size(), removedTailField);
+        tail.remove(oldHead);
+        if (journal.targetTailIndex(entry) >= 0) tail.add(journal.targetTailIndex(entry), target);
+        playerEntity.fieldIndex.update(oldHead);
+        // Start next to the player so no two pushers share a field
+        int fieldIndex = target;
+        for (int i = journal.pushCount(entry); i > 0; --i) {
+            int behind = geometry.neighbor(fieldIndex, dir);
+            occupancy.movableAt(behind).fieldIndex.update(fieldIndex);
+            fieldIndex = behind;
         }
+        if (journal.ate(entry)) entities.add(eatenExpandos.remove(eatenExpandos.size() - 1));
+        if (journal.won(entry)) playerWon.update(false);
+        updateFixedEntity(fieldIndex);
+        updateFixedEntity(target);
+        if (removedTailField >= 0) updateFixedEntity(removedTailField);
         return true;
     }
 
-    private void movePlayer(Direction dir) {
-        int targetHeadIndex = addDirToIndex(level.dim, playerEntity.fieldIndex.get(), dir);
-        boolean isFreshHead = !playerEntity.tail.contains(targetHeadIndex);
-        List<Entity> targetEntities = entitiesAt(targetHeadIndex);
-        for (Entity targetEntity : targetEntities) {
-            targetEntity.beforeEntityEnters(playerEntity, dir);
-            if (targetEntity.type == Entity.Type.PUSHER) {
-                playerPushes.emit((PusherEntity) targetEntity);
-            }
+    /**
+     * Makes the last move taken back by {@link #undo} again.
+     *
+     * @return whether there was a move to make again
+     */
+    public boolean redo() {
+        if (journal.redoCount() == 0) return false;
+        Direction dir = directions[journal.redoDirection()];
+        checkState(canMovePlayer(dir), "The move %s cannot be made again", dir);
+        movePlayer(dir, true);
+        return true;
+    }
+
+    /**
+     * @return what keeps the player from moving in direction {@code dir} or null if it can move
+     */
+    public Blocker moveBlocker(Direction dir) {
+        if (playerWon.get()) return Blocker.WON;
+        return scanMove(dir);
+    }
+
+    /**
+     * Checks all four directions at once, see {@link MoveMask} for how to read the result.
+     *
+     * @return the legal moves and what they do, 0 once the level is won
+     */
+    public int moveMask() {
+        if (playerWon.get()) return 0;
+        int mask = 0;
+        for (Direction dir : directions) {
+            if (scanMove(dir) != null) continue;
+            int target = geometry.neighbor(playerEntity.fieldIndex.get(), dir);
+            Entity movable = occupancy.movableAt(target);
+            Entity fixed = occupancy.fixedAt(target);
+            mask |= MoveMask.move(dir.ordinal(), pushCount > 0, movable != null && movable.type == Entity.Type.EXPANDO,
+                    fixed != null && fixed.type == Entity.Type.GOAL);
         }
-        playerEntity.tail.remove(Integer.valueOf(targetHeadIndex));
-        playerEntity.tail.add(0, playerEntity.fieldIndex.get());
-        playerEntity.fieldIndex.update(targetHeadIndex);
+        return mask;
+    }
 
-        if (!isFreshHead) return;
+    private boolean canMovePlayer(Direction dir) { return scanMove(dir) == null; }
 
-        if (Iterables.any(targetEntities, new Predicate<Entity>() {
-            @Override public boolean apply(Entity entity) {
-                return entity.keepPlayerTailOnEnter();
+    /**
+     * Walks from the player in direction {@code dir} over the row of pushers in front of it, each one costs one power,
+     * and remembers the pushers for {@link #pushChain}.
+     *
+     * @return what keeps the player from moving or null if it can move
+     */
+    private Blocker scanMove(Direction dir) {
+        pushCount = 0;
+        Entity mover = playerEntity;
+        int power = playerEntity.tail.size() + 1;
+        int fieldIndex = geometry.neighbor(playerEntity.fieldIndex.get(), dir);
+        while (true) {
+            if (fieldIndex < 0) return Blocker.EDGE;
+            Entity fixed = occupancy.fixedAt(fieldIndex);
+            if (fixed != null && !fixed.canEnter(mover, dir, power)) {
+                return fixed.type == Entity.Type.WALL ? Blocker.WALL : Blocker.DOOR;
             }
-        })) {
-            return;
+            Entity movable = occupancy.movableAt(fieldIndex);
+            if (movable == null) return null;
+            if (movable.type != Entity.Type.PUSHER) return movable.canEnter(mover, dir, power) ? null : Blocker.EXPANDO;
+            if (!movable.canEnter(mover, dir, power)) return Blocker.POWER;
+            pushChain[pushCount++] = (PusherEntity) movable;
+            fieldIndex = geometry.neighbor(fieldIndex, dir);
+            // We may not push onto the players tail
+            if (playerEntity.tail.contains(fieldIndex)) return Blocker.TAIL;
+            mover = movable;
+            --power;
         }
+    }
 
-        int removedFieldIndex = playerEntity.tail.remove(playerEntity.tail.size() - 1);
-        for (Entity entity : entitiesAt(removedFieldIndex)) {
-            entity.afterEntityLeft(playerEntity);
+    /**
+     * Moves the pushers found by {@link #scanMove} one field in direction {@code dir}. All pushers leave their fields
+     * before the one at the far end enters the next field, then the others follow it.
+     */
+    private void pushChain(Direction dir) {
+        Entity mover = playerEntity;
+        for (int i = 0; i < pushCount; i++) {
+            PusherEntity pusher = pushChain[i];
+            pusher.beforeEntityEnters(mover, dir);
+            // A pusher's field may only share a fixed entity with it
+            Entity fixed = occupancy.fixedAt(pusher.fieldIndex.get());
+            if (fixed != null) fixed.afterEntityLeft(pusher);
+            mover = pusher;
+        }
+        for (int i = pushCount - 1; i >= 0; --i) {
+            PusherEntity pusher = pushChain[i];
+            int targetFieldIndex = geometry.neighbor(pusher.fieldIndex.get(), dir);
+            Entity targetFixed = occupancy.fixedAt(targetFieldIndex);
+            if (targetFixed != null) targetFixed.beforeEntityEnters(pusher, dir);
+            pusher.fieldIndex.update(targetFieldIndex);
         }
     }
 
-    private List<Entity> entitiesAt(int fieldIndex) {
-        List<Entity> result = new ArrayList<>();
-        for (Entity entity : entities) {
-            if (entity.fieldIndex.get() == fieldIndex) result.add(entity);
+    /**
+     * Sets the button or door on {@code fieldIndex} to whether something is on the field, for {@link #undo} and
+     * {@link #restore}.
+     */
+    private void updateFixedEntity(int fieldIndex) {
+        Entity fixed = occupancy.fixedAt(fieldIndex);
+        if (fixed == null) return;
+        boolean occupied = fieldIndex == playerEntity.fieldIndex.get() || playerEntity.tail.contains(fieldIndex)
+                || occupancy.movableAt(fieldIndex) != null;
+        switch (fixed.type) {
+            case BUTTON:
+                ((ButtonEntity) fixed).setDown(occupied);
+                break;
+            case DOOR:
+                ((DoorEntity) fixed).setOccupied(occupied);
+                break;
+            default:
+                break;
         }
-        return result;
     }
 
-    private Point tmp = new Point();
+    /**
+     * @param redo whether the move is made again by {@link #redo}, which keeps the moves after it in the journal
+     */
+    private void movePlayer(Direction dir, boolean redo) {
+        int oldHead = playerEntity.fieldIndex.get();
+        int targetHeadIndex = geometry.neighbor(oldHead, dir);
+        boolean isFreshHead = !playerEntity.tail.contains(targetHeadIndex);
+        // Remember the targets up front, entering may move or remove them from the field
+        Entity targetMovable = occupancy.movableAt(targetHeadIndex);
+        Entity targetFixed = occupancy.fixedAt(targetHeadIndex);
+        if (pushCount > 0) {
+            pushChain(dir);
+            playerPushes.emit(pushChain[0]);
+        } else if (targetMovable != null) {
+            targetMovable.beforeEntityEnters(playerEntity, dir);
+        }
+        if (targetFixed != null) {
+            targetFixed.beforeEntityEnters(playerEntity, dir);
+        }
+        int targetTailIndex = playerEntity.tail.remove(targetHeadIndex);
+        playerEntity.tail.addFirst(oldHead);
+        playerEntity.fieldIndex.update(targetHeadIndex);
+
+        boolean ate = targetMovable != null && targetMovable.type == Entity.Type.EXPANDO;
+        if (ate) eatenExpandos.add((ExpandoEntity) targetMovable);
+        int removedFieldIndex = -1;
+        boolean keepTail = (targetMovable != null && targetMovable.keepPlayerTailOnEnter())
+                || (targetFixed != null && targetFixed.keepPlayerTailOnEnter());
+        if (isFreshHead && !keepTail) {
+            removedFieldIndex = playerEntity.tail.removeLast();
+            Entity leftMovable = occupancy.movableAt(removedFieldIndex);
+            Entity leftFixed = occupancy.fixedAt(removedFieldIndex);
+            if (leftMovable != null) leftMovable.afterEntityLeft(playerEntity);
+            if (leftFixed != null) leftFixed.afterEntityLeft(playerEntity);
+        }
+        journal.record(dir, oldHead, targetTailIndex, removedFieldIndex, pushCount, ate, playerWon.get(), redo);
+    }
 }
@@ -0,0 +1,432 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkState;
+import static de.cdietze.quads.core.Level.BUTTON;
+import static de.cdietze.quads.core.Level.DOOR;
+import static de.cdietze.quads.core.Level.GOAL;
+import static de.cdietze.quads.core.Level.WALL;
+
+/**
+ * Headless implementation of the {@link BoardState} rules over flat primitive arrays.
+ * <p>
+ * There are no entities, values or signals: a move touches a handful of array slots and allocates nothing, which makes
+ * this the engine for solving, replay checking and other bulk evaluation. Pushers and expandos are identified by their
+ * index in {@link Level#pushEntity} and {@link Level#expandoEntity}. Moves that should be shown are played on a
+ * {@link BoardState}.
+ */
+public final class Engine {
+
+    private static final Direction[] directions = Direction.values();
+
+    public final Level level;
+    private final LevelGeometry geometry;
+    /** The fixed entity on each field, shared with the level, see {@link Level#cell} */
+    private final byte[] cells;
+    /** The door link of each door and button field */
+    private final int[] links;
+    /** The number of buttons of each door link */
+    private final int[] linkButtons;
+
+    private int head;
+    private final WormTail tail;
+    private boolean won;
+    private final int[] pusherAt;
+    private final int[] pusherPositions;
+    private final int[] expandoAt;
+    private int expandosLeft;
+    /** {@link Zobrist} hash of the pushers and remaining expandos */
+    private long pieceHash;
+    /** The number of pressed buttons of each door link */
+    private final int[] linkPressed;
+
+    // What the last move did, see the lastXyz() accessors
+    private final int[] pushChain;
+    private int pushCount;
+    private int eatenExpando;
+    private int removedTailField;
+    /** The head before the last move and the index the new head had in the tail or -1, see {@link #undo()} */
+    private int previousHead;
+    private int removedTailIndex;
+
+    // Scratch space for isDeadEnd(), allocated on first use
+    private BitSet frozen;
+    private int[] fillStack;
+
+    public Engine(Level level) {
+        this.level = level;
+        geometry = level.geometry();
+        cells = level.cells;
+        links = new int[level.fieldCount];
+        linkButtons = new int[level.doorLinks.size()];
+        for (int i = 0; i < level.doorLinks.size(); i++) {
+            Level.DoorLink doorLink = level.doorLinks.get(i);
+            for (int fieldIndex : doorLink.buttonFields) links[fieldIndex] = i;
+            for (int fieldIndex : doorLink.doorFields) links[fieldIndex] = i;
+            linkButtons[i] = doorLink.buttonFields.length;
+        }
+
+        pusherAt = new int[level.fieldCount];
+        pusherPositions = new int[level.pushEntity.size()];
+        expandoAt = new int[level.fieldCount];
+        linkPressed = new int[linkButtons.length];
+        pushChain = new int[pusherPositions.length + 1];
+        tail = new WormTail();
+        reset();
+    }
+
+    /**
+     * Copies the mutable state of {@code other} and shares everything that depends on the level alone.
+     */
+    private Engine(Engine other) {
+        level = other.level;
+        geometry = other.geometry;
+        cells = other.cells;
+        links = other.links;
+        linkButtons = other.linkButtons;
+
+        head = other.head;
+        tail = other.tail.copy();
+        won = other.won;
+        pusherAt = Arrays.copyOf(other.pusherAt, other.pusherAt.length);
+        pusherPositions = Arrays.copyOf(other.pusherPositions, other.pusherPositions.length);
+        expandoAt = Arrays.copyOf(other.expandoAt, other.expandoAt.length);
+        expandosLeft = other.expandosLeft;
+        pieceHash = other.pieceHash;
+        linkPressed = Arrays.copyOf(other.linkPressed, other.linkPressed.length);
+        pushChain = Arrays.copyOf(other.pushChain, other.pushChain.length);
+        pushCount = other.pushCount;
+        eatenExpando = other.eatenExpando;
+        removedTailField = other.removedTailField;
+        previousHead = other.previousHead;
+        removedTailIndex = other.removedTailIndex;
+    }
+
+    /**
+     * @return an independent engine in the same state, including what the last move did. Only the arrays that moves
+     * change are copied, and the tail only once one of the two engines changes it.
+     */
+    public Engine fork() { return new Engine(this); }
+
+    /**
+     * Puts the engine back into the level's start state.
+     */
+    public void reset() {
+        head = level.playerStart;
+        while (!tail.isEmpty()) tail.removeLast();
+        won = false;
+        Arrays.fill(pusherAt, -1);
+        Arrays.fill(expandoAt, -1);
+        Arrays.fill(linkPressed, 0);
+        occupy(head);
+        pieceHash = 0L;
+        int[] pushers = level.pusherFields;
+        for (int id = 0; id < pushers.length; id++) {
+            pusherPositions[id] = pushers[id];
+            pusherAt[pusherPositions[id]] = id;
+            occupy(pusherPositions[id]);
+            pieceHash ^= Zobrist.pusher(pusherPositions[id]);
+        }
+        int[] expandos = level.expandoFields;
+        for (int id = 0; id < expandos.length; id++) {
+            expandoAt[expandos[id]] = id;
+            pieceHash ^= Zobrist.expando(expandos[id]);
+        }
+        expandosLeft = expandos.length;
+        pushCount = 0;
+        eatenExpando = -1;
+        removedTailField = -1;
+        previousHead = -1;
+    }
+
+    /**
+     * Puts the engine into the state of {@code snapshot}, which must have been taken from a board of the same level.
+     */
+    public void restore(StateSnapshot snapshot) { restore(snapshot.words(), 0); }
+
+    /**
+     * Puts the engine into the state packed into {@code words} at {@code offset} by
+     * {@link StateSnapshot#pack(Engine, long[], int)}. Pushers get new ids in the order of their fields.
+     */
+    public void restore(long[] words, int offset) {
+        for (int id = 0; id < pusherPositions.length; id++) pusherAt[pusherPositions[id]] = -1;
+        while (!tail.isEmpty()) tail.removeLast();
+        Arrays.fill(linkPressed, 0);
+        pieceHash = 0L;
+
+        StateSnapshot.Unpacker unpacker = new StateSnapshot.Unpacker(level, words, offset);
+        head = unpacker.nextField();
+        occupy(head);
+        int tailSize = unpacker.nextField();
+        // The tail is packed newest first, and it is built up oldest first
+        for (int i = tailSize - 1; i >= 0; --i) {
+            int fieldIndex = StateSnapshot.tailSegment(level, words, offset, i);
+            tail.addFirst(fieldIndex);
+            occupy(fieldIndex);
+        }
+        unpacker.skipFields(tailSize);
+        for (int id = 0; id < pusherPositions.length; id++) {
+            int fieldIndex = unpacker.nextField();
+            pusherPositions[id] = fieldIndex;
+            pusherAt[fieldIndex] = id;
+            occupy(fieldIndex);
+            pieceHash ^= Zobrist.pusher(fieldIndex);
+        }
+        int[] expandos = level.expandoFields;
+        expandosLeft = 0;
+        for (int id = 0; id < expandos.length; id++) {
+            int fieldIndex = expandos[id];
+            if (unpacker.nextBit()) {
+                expandoAt[fieldIndex] = id;
+                pieceHash ^= Zobrist.expando(fieldIndex);
+                ++expandosLeft;
+            } else {
+                expandoAt[fieldIndex] = -1;
+            }
+        }
+        won = cells[head] == GOAL;
+        pushCount = 0;
+        eatenExpando = -1;
+        removedTailField = -1;
+        previousHead = -1;
+    }
+
+    public int head() { return head; }
+
+    /**
+     * The worm's tail. Must not be modified from the outside.
+     */
+    public WormTail tail() { return tail; }
+
+    public boolean hasWon() { return won; }
+
+    public int pusherCount() { return pusherPositions.length; }
+
+    public int pusherPosition(int pusherId) { return pusherPositions[pusherId]; }
+
+    /**
+     * @return the id of the pusher on the field or -1
+     */
+    public int pusherAt(int fieldIndex) { return pusherAt[fieldIndex]; }
+
+    /**
+     * @return the id of the expando on the field or -1 if there is none or it was eaten
+     */
+    public int expandoAt(int fieldIndex) { return expandoAt[fieldIndex]; }
+
+    public int expandosLeft() { return expandosLeft; }
+
+    /**
+     * @return the {@link Zobrist} hash of the current state, kept up to date by every move
+     */
+    public long hash() { return pieceHash ^ Zobrist.head(head) ^ tail.hash(); }
+
+    /**
+     * @return the {@link Zobrist} hash of the pushers and the expandos left, which only changes with pushes and meals
+     */
+    public long pieceHash() { return pieceHash; }
+
+    /**
+     * @return a packed copy of the current state
+     */
+    public StateSnapshot snapshot() { return StateSnapshot.of(this); }
+
+    /**
+     * @return whether the worm or a pusher is on the field
+     */
+    public boolean isOccupied(int fieldIndex) {
+        return fieldIndex == head || tail.contains(fieldIndex) || pusherAt[fieldIndex] >= 0;
+    }
+
+    public boolean isButtonDown(int fieldIndex) {
+        return cells[fieldIndex] == BUTTON && isOccupied(fieldIndex);
+    }
+
+    public boolean isDoorOpen(int fieldIndex) {
+        if (cells[fieldIndex] != DOOR) return false;
+        int link = links[fieldIndex];
+        return linkPressed[link] == linkButtons[link] || isOccupied(fieldIndex);
+    }
+
+    /**
+     * @return whether frozen pushers cut the worm off from the goal, in which case the level can not be won from here.
+     * This only changes when pushers move, see {@link LevelAnalysis}.
+     */
+    public boolean isDeadEnd() {
+        if (frozen == null) {
+            frozen = new BitSet(level.fieldCount);
+            fillStack = new int[level.fieldCount];
+        }
+        return level.analysis().isDeadEnd(this, frozen, fillStack);
+    }
+
+    /**
+     * @return whether the player moved
+     */
+    public boolean tryMove(Direction dir) {
+        if (won) return false;
+        if (!canMove(dir)) return false;
+        move(dir);
+        return true;
+    }
+
+    public boolean canMove(Direction dir) {
+        int target = geometry.neighbor(head, dir);
+        return target >= 0 && canEnter(target, dir.ordinal(), tail.size() + 1);
+    }
+
+    /**
+     * Checks all four directions at once, see {@link MoveMask} for how to read the result.
+     *
+     * @return the legal moves and what they do, 0 once the level is won
+     */
+    public int moveMask() {
+        if (won) return 0;
+        int power = tail.size() + 1;
+        int mask = 0;
+        for (int d = 0; d < directions.length; d++) {
+            int target = geometry.neighbor(head, d);
+            if (target < 0 || !canEnter(target, d, power)) continue;
+            mask |= MoveMask.move(d, pusherAt[target] >= 0, expandoAt[target] >= 0, cells[target] == GOAL);
+        }
+        return mask;
+    }
+
+    /**
+     * Walks the chain of pushers in front of the head, each one costs one power.
+     *
+     * @return whether the head can enter {@code target}, its neighbor in the direction with the given ordinal
+     */
+    private boolean canEnter(int target, int dirOrdinal, int power) {
+        int fieldIndex = target;
+        boolean isPlayer = true;
+        while (true) {
+            byte cell = cells[fieldIndex];
+            if (cell == WALL) return false;
+            if (cell == DOOR && !isDoorOpen(fieldIndex)) return false;
+            if (expandoAt[fieldIndex] >= 0) return isPlayer;
+            if (pusherAt[fieldIndex] < 0) return true;
+            if (power <= 0) return false;
+            fieldIndex = geometry.neighbor(fieldIndex, dirOrdinal);
+            if (fieldIndex < 0) return false;
+            // We may not push onto the players tail
+            if (tail.contains(fieldIndex)) return false;
+            --power;
+            isPlayer = false;
+        }
+    }
+
+    private void move(Direction dir) {
+        int target = geometry.neighbor(head, dir);
+        boolean isFreshHead = !tail.contains(target);
+
+        pushCount = 0;
+        eatenExpando = -1;
+        removedTailField = -1;
+        int fieldIndex = target;
+        while (pusherAt[fieldIndex] >= 0) {
+            pushChain[pushCount++] = fieldIndex;
+            fieldIndex = geometry.neighbor(fieldIndex, dir);
+        }
+        pushChain[pushCount] = fieldIndex;
+        if (pushCount > 0) {
+            // Shift the pushers starting at the far end, the field the first one leaves is taken by the head
+            for (int i = pushCount; i > 0; --i) {
+                int id = pusherAt[pushChain[i - 1]];
+                pusherAt[pushChain[i]] = id;
+                pusherPositions[id] = pushChain[i];
+            }
+            pusherAt[target] = -1;
+            occupy(pushChain[pushCount]);
+            pieceHash ^= Zobrist.pusher(target) ^ Zobrist.pusher(pushChain[pushCount]);
+        } else if (isFreshHead) {
+            occupy(target);
+        }
+        eatenExpando = expandoAt[target];
+        if (eatenExpando >= 0) {
+            expandoAt[target] = -1;
+            --expandosLeft;
+            pieceHash ^= Zobrist.expando(target);
+        }
+        if (cells[target] == GOAL) won = true;
+
+        previousHead = head;
+        removedTailIndex = tail.remove(target);
+        tail.addFirst(head);
+        head = target;
+
+        if (!isFreshHead || eatenExpando >= 0) return;
+        removedTailField = tail.removeLast();
+        free(removedTailField);
+    }
+
+    /**
+     * Takes back the last move, which is cheaper than a {@link #restore} for searches that try every move of a state.
+     * A move can only be taken back once, and not after a {@link #reset} or {@link #restore}.
+     */
+    public void undo() {
+        checkState(previousHead >= 0, "There is no move to take back");
+        int target = head;
+        if (removedTailField >= 0) {
+            tail.add(tail.size(), removedTailField);
+            occupy(removedTailField);
+        }
+        tail.remove(previousHead);
+        if (removedTailIndex >= 0) tail.add(removedTailIndex, target);
+        head = previousHead;
+        won = false;
+        if (eatenExpando >= 0) {
+            expandoAt[target] = eatenExpando;
+            ++expandosLeft;
+            pieceHash ^= Zobrist.expando(target);
+        }
+        if (pushCount > 0) {
+            // Shift the pushers back starting at the near end
+            free(pushChain[pushCount]);
+            for (int i = 1; i <= pushCount; i++) {
+                int id = pusherAt[pushChain[i]];
+                pusherAt[pushChain[i - 1]] = id;
+                pusherPositions[id] = pushChain[i - 1];
+            }
+            pusherAt[pushChain[pushCount]] = -1;
+            pieceHash ^= Zobrist.pusher(target) ^ Zobrist.pusher(pushChain[pushCount]);
+        } else if (removedTailIndex < 0) {
+            free(target);
+        }
+        pushCount = 0;
+        eatenExpando = -1;
+        removedTailField = -1;
+        previousHead = -1;
+    }
+
+    /**
+     * @return the number of pushers the last move pushed
+     */
+    public int lastPushCount() { return pushCount; }
+
+    /**
+     * @return the field of the {@code i}th pusher of the last move's push chain before it moved, with {@code i} equal
+     * to {@link #lastPushCount()} giving the field the last pusher moved to
+     */
+    public int lastPushChainField(int i) { return pushChain[i]; }
+
+    /**
+     * @return the id of the expando the last move ate or -1
+     */
+    public int lastEatenExpando() { return eatenExpando; }
+
+    /**
+     * @return the field the last move removed from the end of the tail or -1
+     */
+    public int lastRemovedTailField() { return removedTailField; }
+
+    private void occupy(int fieldIndex) {
+        if (cells[fieldIndex] == BUTTON) ++linkPressed[links[fieldIndex]];
+    }
+
+    private void free(int fieldIndex) {
+        if (cells[fieldIndex] == BUTTON) --linkPressed[links[fieldIndex]];
+    }
+}
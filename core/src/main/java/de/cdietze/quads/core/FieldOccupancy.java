@@ -0,0 +1,109 @@
+package de.cdietze.quads.core;
+
+import react.RList;
+import react.Slot;
+
+/**
+ * Index from field index to the entities on that field.
+ * <p>
+ * A field holds at most one movable entity (pusher or expando) and at most one fixed entity (wall, door, button or
+ * goal), so each lookup is a single array load and allocates nothing. The index follows the {@link BoardState#entities}
+ * list and every entity's {@link BoardState.Entity#fieldIndex}, and maintains the {@link Zobrist} hash of the
+ * movable entities on the way.
+ */
+public final class FieldOccupancy {
+
+    private final BoardState.Entity[] movable;
+    private final BoardState.Entity[] fixed;
+    private long movableHash;
+
+    public FieldOccupancy(int fieldCount) {
+        movable = new BoardState.Entity[fieldCount];
+        fixed = new BoardState.Entity[fieldCount];
+    }
+
+    /**
+     * @return the pusher or expando on the field or null
+     */
+    public BoardState.Entity movableAt(int fieldIndex) { return movable[fieldIndex]; }
+
+    /**
+     * @return the wall, door, button or goal on the field or null
+     */
+    public BoardState.Entity fixedAt(int fieldIndex) { return fixed[fieldIndex]; }
+
+    /**
+     * @return the Zobrist hash of the pushers and expandos on the board
+     */
+    public long movableHash() { return movableHash; }
+
+    /**
+     * Keeps this index in sync with the entities of {@code list}, including the ones already in it.
+     */
+    public void track(RList<BoardState.Entity> list) {
+        list.connectNotify(new RList.Listener<BoardState.Entity>() {
+            @Override public void onAdd(int index, BoardState.Entity entity) { add(entity); }
+            @Override public void onRemove(int index, BoardState.Entity entity) { remove(entity); }
+        });
+    }
+
+    private void add(final BoardState.Entity entity) {
+        put(entity, entity.fieldIndex.get());
+        if (entity.occupancySlot == null) {
+            entity.occupancySlot = new Slot<Integer>() {
+                @Override public void onEmit(Integer fieldIndex) {
+                    // Entities that have been removed from the board are not indexed anymore
+                    if (entity.indexedField < 0) return;
+                    clear(entity);
+                    put(entity, fieldIndex);
+                }
+            };
+            entity.fieldIndex.connect(entity.occupancySlot);
+        }
+    }
+
+    private void remove(BoardState.Entity entity) {
+        clear(entity);
+        entity.indexedField = -1;
+    }
+
+    private void put(BoardState.Entity entity, int fieldIndex) {
+        BoardState.Entity[] layer = layerOf(entity);
+        // Not checkState, whose varargs box the field on every move
+        if (layer[fieldIndex] != null) {
+            throw new IllegalStateException("Field " + fieldIndex + " is already occupied by " + layer[fieldIndex]);
+        }
+        layer[fieldIndex] = entity;
+        entity.indexedField = fieldIndex;
+        movableHash ^= zobristKey(entity, fieldIndex);
+    }
+
+    private void clear(BoardState.Entity entity) {
+        BoardState.Entity[] layer = layerOf(entity);
+        if (entity.indexedField >= 0 && layer[entity.indexedField] == entity) {
+            layer[entity.indexedField] = null;
+            movableHash ^= zobristKey(entity, entity.indexedField);
+        }
+    }
+
+    private static long zobristKey(BoardState.Entity entity, int fieldIndex) {
+        switch (entity.type) {
+            case PUSHER:
+                return Zobrist.pusher(fieldIndex);
+            case EXPANDO:
+                return Zobrist.expando(fieldIndex);
+            default:
+                return 0L;
+        }
+    }
+
+    private BoardState.Entity[] layerOf(BoardState.Entity entity) {
+        switch (entity.type) {
+            case PUSHER:
+            case EXPANDO:
+                return movable;
+            default:
+                return fixed;
+        }
+    }
+}
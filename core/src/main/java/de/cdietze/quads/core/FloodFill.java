@@ -0,0 +1,115 @@
+package de.cdietze.quads.core;
+
+import pythagoras.i.IDimension;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Expands sets of fields orthogonally over the fields accepted by a {@link FieldPredicate}, like
+ * {@link PointUtils#expand} but without boxing and with a stack that is kept between fills.
+ * <p>
+ * Every field is pushed at most once, so a fill takes time linear in the size of the region. {@link #scanline} pushes
+ * one field per horizontal run instead and walks the runs in order, which touches far fewer stack slots on open
+ * regions. A fill object is not thread-safe.
+ */
+public final class FloodFill {
+
+    public interface FieldPredicate {
+        boolean test(int fieldIndex);
+    }
+
+    private final int width;
+    private final int fieldCount;
+    private int[] stack;
+
+    public FloodFill(IDimension dim) {
+        this.width = dim.width();
+        this.fieldCount = dim.width() * dim.height();
+        this.stack = new int[Math.min(fieldCount, 1024)];
+    }
+
+    /**
+     * Fills from {@code seeds} over the fields accepted by {@code predicate}. The seeds are part of the region whether
+     * they are accepted or not.
+     *
+     * @return {@code result}, which must not be {@code seeds}, cleared and holding the region
+     */
+    public BitSet fill(BitSet seeds, FieldPredicate predicate, BitSet result) {
+        int size = start(seeds, result);
+        while (size > 0) {
+            int fieldIndex = stack[--size];
+            int x = fieldIndex % width;
+            if (x > 0) size = visit(fieldIndex - 1, predicate, result, size);
+            if (x < width - 1) size = visit(fieldIndex + 1, predicate, result, size);
+            if (fieldIndex >= width) size = visit(fieldIndex - width, predicate, result, size);
+            if (fieldIndex + width < fieldCount) size = visit(fieldIndex + width, predicate, result, size);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #fill}, but extends every popped field to the whole run of accepted fields in its row and then looks
+     * for new runs in the rows above and below it.
+     *
+     * @return {@code result}, which must not be {@code seeds}, cleared and holding the region
+     */
+    public BitSet scanline(BitSet seeds, FieldPredicate predicate, BitSet result) {
+        int size = start(seeds, result);
+        while (size > 0) {
+            int fieldIndex = stack[--size];
+            int rowStart = fieldIndex - fieldIndex % width;
+            int left = fieldIndex;
+            while (left > rowStart && canEnter(left - 1, predicate, result)) result.set(--left);
+            int right = fieldIndex;
+            while (right < rowStart + width - 1 && canEnter(right + 1, predicate, result)) result.set(++right);
+            if (rowStart > 0) size = scanRow(left - width, right - width, predicate, result, size);
+            if (rowStart + width < fieldCount) size = scanRow(left + width, right + width, predicate, result, size);
+        }
+        return result;
+    }
+
+    private int start(BitSet seeds, BitSet result) {
+        result.clear();
+        result.or(seeds);
+        int size = 0;
+        for (int fieldIndex = seeds.nextSetBit(0); fieldIndex >= 0; fieldIndex = seeds.nextSetBit(fieldIndex + 1)) {
+            size = push(fieldIndex, size);
+        }
+        return size;
+    }
+
+    /**
+     * Pushes the first field of every run of enterable fields between {@code from} and {@code to}. Only that field is
+     * marked, the rest of the run is taken when it is popped.
+     */
+    private int scanRow(int from, int to, FieldPredicate predicate, BitSet result, int size) {
+        boolean inRun = false;
+        for (int fieldIndex = from; fieldIndex <= to; fieldIndex++) {
+            if (!canEnter(fieldIndex, predicate, result)) {
+                inRun = false;
+            } else if (!inRun) {
+                result.set(fieldIndex);
+                size = push(fieldIndex, size);
+                inRun = true;
+            }
+        }
+        return size;
+    }
+
+    private int visit(int fieldIndex, FieldPredicate predicate, BitSet result, int size) {
+        if (!canEnter(fieldIndex, predicate, result)) return size;
+        result.set(fieldIndex);
+        return push(fieldIndex, size);
+    }
+
+    private static boolean canEnter(int fieldIndex, FieldPredicate predicate, BitSet result) {
+        return !result.get(fieldIndex) && predicate.test(fieldIndex);
+    }
+
+    private int push(int fieldIndex, int size) {
+        if (size == stack.length) stack = Arrays.copyOf(stack, Math.max(2 * size, 16));
+        stack[size] = fieldIndex;
+        return size + 1;
+    }
+}
@@ -1,28 +1,46 @@
 package de.cdietze.quads.core;
 
 import com.google.common.base.Function;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Range;
+import com.google.common.primitives.Ints;
 import pythagoras.i.Dimension;
 import pythagoras.i.Rectangle;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkState;
 
+/**
+ * The layout of a level, stored as a byte per field for the fixed entities plus an int array per kind of piece. The
+ * {@code List} fields are read-only views of those arrays, so a level costs little more than its field count in bytes.
+ */
 public class Level {
 
+    // The cell types, see cell()
+    public static final byte EMPTY = 0;
+    public static final byte WALL = 1;
+    public static final byte BUTTON = 2;
+    public static final byte DOOR = 3;
+    public static final byte GOAL = 4;
+
     public static class DoorLink {
         public final List<Integer> doors;
         public final List<Integer> buttons;
+        final int[] doorFields;
+        final int[] buttonFields;
+
+        private DoorLink(Builder builder) { this(Ints.toArray(builder.doors), Ints.toArray(builder.buttons)); }
 
-        private DoorLink(Builder builder) {
-            this.doors = ImmutableList.copyOf(builder.doors);
-            this.buttons = ImmutableList.copyOf(builder.buttons);
+        DoorLink(int[] doorFields, int[] buttonFields) {
+            this.doorFields = doorFields;
+            this.buttonFields = buttonFields;
+            doors = view(doorFields);
+            buttons = view(buttonFields);
         }
 
         public static class Builder {
@@ -46,20 +64,73 @@ public class Level {
     public final List<Integer> pushEntity;
     public final List<Integer> expandoEntity;
     public final List<DoorLink> doorLinks;
+    /** The fixed entity on each field, one of {@link #EMPTY}, {@link #WALL}, ... */
+    final byte[] cells;
+    final int[] wallFields;
+    final int[] pusherFields;
+    final int[] expandoFields;
+    private LevelGeometry geometry;
+    private LevelAnalysis analysis;
 
     private Level(Builder builder) {
-        dim = builder.dim.clone();
-        rect = new Rectangle(dim);
-        fieldCount = dim.width * dim.height;
-        title = builder.title;
-        playerStart = builder.playerStart;
+        this(builder.title, builder.dim, builder.playerStart, builder.playerGoal, Ints.toArray(builder.walls),
+                Ints.toArray(builder.pushEntity), Ints.toArray(builder.expandoEntity),
+                Maps.transformValues(builder.doorLinks, DoorLink.builderFunction).values());
+    }
+
+    /**
+     * Takes over the arrays without copying them, for {@link LevelCodec}.
+     */
+    Level(String title, Dimension dim, int playerStart, int playerGoal, int[] wallFields, int[] pusherFields,
+          int[] expandoFields, Collection<DoorLink> doorLinks) {
+        this.dim = dim.clone();
+        rect = new Rectangle(this.dim);
+        fieldCount = this.dim.width * this.dim.height;
+        this.title = title;
+        this.playerStart = playerStart;
         checkState(playerStart >= 0);
-        playerGoal = builder.playerGoal;
+        this.playerGoal = playerGoal;
         checkState(playerGoal >= 0);
-        walls = ImmutableList.copyOf(builder.walls);
-        pushEntity = ImmutableList.copyOf(builder.pushEntity);
-        expandoEntity = ImmutableList.copyOf(builder.expandoEntity);
-        doorLinks = ImmutableList.copyOf(Maps.transformValues(builder.doorLinks, DoorLink.builderFunction).values());
+        this.wallFields = wallFields;
+        this.pusherFields = pusherFields;
+        this.expandoFields = expandoFields;
+        walls = view(wallFields);
+        pushEntity = view(pusherFields);
+        expandoEntity = view(expandoFields);
+        this.doorLinks = ImmutableList.copyOf(doorLinks);
+        cells = new byte[fieldCount];
+        for (int fieldIndex : wallFields) cells[fieldIndex] = WALL;
+        for (DoorLink doorLink : doorLinks) {
+            for (int fieldIndex : doorLink.buttonFields) cells[fieldIndex] = BUTTON;
+            for (int fieldIndex : doorLink.doorFields) cells[fieldIndex] = DOOR;
+        }
+        cells[playerGoal] = GOAL;
+    }
+
+    /**
+     * @return the fixed entity on the field, one of {@link #EMPTY}, {@link #WALL}, {@link #BUTTON}, {@link #DOOR} and
+     * {@link #GOAL}
+     */
+    public byte cell(int fieldIndex) { return cells[fieldIndex]; }
+
+    private static List<Integer> view(int[] fields) { return Collections.unmodifiableList(Ints.asList(fields)); }
+
+    /**
+     * @return the lookup tables for the fields of this level, computed on first use and immutable like
+     * {@link #analysis()}
+     */
+    public LevelGeometry geometry() {
+        if (geometry == null) geometry = new LevelGeometry(dim);
+        return geometry;
+    }
+
+    /**
+     * @return the analysis of this level, computed on first use. It is immutable, so computing it twice when several
+     * threads get here at once does no harm.
+     */
+    public LevelAnalysis analysis() {
+        if (analysis == null) analysis = new LevelAnalysis(this);
+        return analysis;
     }
 
     public static final class Builder {
@@ -95,23 +166,56 @@ public class Level {
             return doorLinks.get(key);
         }
 
+        /**
+         * Reads the grid of a level, one row per line, see {@link LevelTextParser} for text with many levels.
+         *
+         * @throws LevelFormatException on an unknown field or a row whose width differs from the first one
+         */
         public Level.Builder read(String s) {
-            List<String> rows = Splitter.on('\n').splitToList(s);
-            this.dim = new Dimension(rows.get(0).length(), rows.size());
-            rows.get(0).length();
-            for (int y = 0; y < rows.size(); y++) {
-                String row = rows.get(y);
-                for (int x = 0; x < row.length(); ++x) {
-                    char c = row.charAt(x);
-                    handleChar(c, PointUtils.toIndex(dim, x, y));
+            int width = s.indexOf('\n') < 0 ? s.length() : s.indexOf('\n');
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\n') {
+                    checkRowWidth(x, width, y + 1);
+                    x = 0;
+                    ++y;
+                    continue;
+                }
+                if (x == width) {
+                    throw new LevelFormatException(y + 1, x + 1, "Row is wider than the first one of " + width + " fields");
                 }
+                readField(c, x + y * width, y + 1, x + 1);
+                ++x;
             }
+            checkRowWidth(x, width, y + 1);
+            this.dim = new Dimension(width, y + 1);
             return this;
         }
 
-        private void handleChar(char c, int index) {
-            Range<Character> doorRange = Range.closed('A', 'D');
-            Range<Character> buttonRange = Range.closed('a', 'd');
+        /**
+         * Adds the field given by {@code c} at {@code index}, {@code line} and {@code column} tell where it was read.
+         */
+        void readField(char c, int index, int line, int column) {
+            if (!handleChar(c, index)) throw new LevelFormatException(line, column, "Unknown field '" + c + "'");
+        }
+
+        static void checkRowWidth(int rowWidth, int width, int line) {
+            if (rowWidth == width) return;
+            throw new LevelFormatException(line, Math.min(rowWidth, width) + 1,
+                    "Row has " + rowWidth + " fields, the first one " + width);
+        }
+
+        /**
+         * Every upper case letter from A to Z other than S, G, W, P and X is a door and the same letter in lower case
+         * one of its buttons. For levels with more door links the Greek letters work the same way, from Alpha to Omega.
+         * The letters are matched by their code points rather than {@code Character.isUpperCase}, which only knows
+         * A to Z when compiled with GWT, so a level reads the same on every platform.
+         *
+         * @return false if {@code c} is no field
+         */
+        private boolean handleChar(char c, int index) {
             if (c == 'S') {
                 playerStart(index);
             } else if (c == 'G') {
@@ -123,12 +227,27 @@ public class Level {
             } else if (c == 'X') {
                 expandoEntity.add(index);
             } else if (c == '.') {
-            } else if (doorRange.contains(c)) {
+            } else if (isDoorKey(c)) {
                 doorLink(c).doors.add(index);
-            } else if (buttonRange.contains(c)) {
-                doorLink(Character.toUpperCase(c)).buttons.add(index);
-            } else
-                throw new AssertionError("unknown char in level description: '" + c + "'");
+            } else if (isDoorKey(upperCase(c))) {
+                doorLink(upperCase(c)).buttons.add(index);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private static boolean isDoorKey(char c) {
+            if (c >= 'A' && c <= 'Z') return c != 'S' && c != 'G' && c != 'W' && c != 'P' && c != 'X';
+            // Alpha to Omega, U+03A2 is unassigned
+            return c >= '\u0391' && c <= '\u03a9' && c != '\u03a2';
+        }
+
+        /**
+         * @return the upper case letter of a lower case door key, otherwise a character that is no door key
+         */
+        private static char upperCase(char c) {
+            return c >= 'a' && c <= 'z' || c >= '\u03b1' && c <= '\u03c9' ? (char) (c - 0x20) : c;
         }
 
         public Level build() {return new Level(this);}
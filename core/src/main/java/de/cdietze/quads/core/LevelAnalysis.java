@@ -0,0 +1,233 @@
+package de.cdietze.quads.core;
+
+import com.google.common.primitives.Ints;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * What can be told about a {@link Level} without playing it, computed once by {@link Level#analysis()} and shared by
+ * every board and engine of the level.
+ * <p>
+ * A pusher only moves when the worm pushes it, directly or through a chain of pushers, so it needs a field the worm can
+ * stand on behind it and a free field in front of it. Walls and the board's edge never change, every other field
+ * might become free at some point. This gives two things:
+ * <ul>
+ * <li>The dead fields: fields from which a pusher can never be pushed onto a button or door, the only fields where
+ * a pusher does something for the worm. A pusher on a dead field is at best out of the way.</li>
+ * <li>Frozen pushers, see {@link #frozenPushers}: pushers that can never move again because they are stuck against
+ * walls and each other. The worm can never enter their fields.</li>
+ * </ul>
+ * A door link also stays shut for good once too few things are left to hold all of its buttons down at once: frozen
+ * pushers on its buttons, pushers that can still be pushed onto one, and the worm. The worm's length only changes by
+ * eating expandos, and as it is made of the fields it visited last, no two of its segments are further apart than its
+ * length minus one. When a door is first entered the head is next to it or pushing a pusher into it, so the head only
+ * counts if one of the link's buttons is in line with one of its doors. {@link Engine#isDeadEnd()} checks whether
+ * frozen pushers and shut doors cut the worm off from the goal, which lets a search drop such states.
+ */
+public final class LevelAnalysis {
+
+    private static final Direction[] directions = Direction.values();
+
+    public final Level level;
+    private final LevelGeometry geometry;
+    private final boolean[] walls;
+    private final BitSet deadFields;
+    /** The fields from which a pusher can get onto a button of each door link */
+    private final BitSet[] linkUsefulFields;
+    /** The number of buttons of each door link the worm can hold down when one of its doors is entered */
+    private final int[] linkWormButtons;
+
+    LevelAnalysis(Level level) {
+        this.level = level;
+        walls = new boolean[level.fieldCount];
+        for (int fieldIndex : level.wallFields) walls[fieldIndex] = true;
+        geometry = level.geometry();
+        List<Level.DoorLink> doorLinks = level.doorLinks;
+        BitSet useful = new BitSet(level.fieldCount);
+        linkUsefulFields = new BitSet[doorLinks.size()];
+        linkWormButtons = new int[doorLinks.size()];
+        int wormLength = 1 + level.expandoEntity.size();
+        for (int i = 0; i < doorLinks.size(); i++) {
+            Level.DoorLink doorLink = doorLinks.get(i);
+            linkUsefulFields[i] = pushableOnto(doorLink.buttons);
+            useful.or(linkUsefulFields[i]);
+            useful.or(pushableOnto(doorLink.doors));
+            int wormButtons = isAnyInLine(doorLink.buttons, doorLink.doors) ? wormLength : wormLength - 1;
+            linkWormButtons[i] = Math.min(wormButtons, maxWithinDistance(doorLink.buttons, wormLength - 1));
+        }
+        deadFields = new BitSet(level.fieldCount);
+        for (int fieldIndex = 0; fieldIndex < level.fieldCount; fieldIndex++) {
+            if (!walls[fieldIndex] && !useful.get(fieldIndex)) deadFields.set(fieldIndex);
+        }
+    }
+
+    /**
+     * @return the fields from which a pusher can never get onto a button or door, walls excluded
+     */
+    public BitSet deadFields() { return (BitSet) deadFields.clone(); }
+
+    public boolean isDeadField(int fieldIndex) { return deadFields.get(fieldIndex); }
+
+    /**
+     * @return the most buttons of the door link the worm can hold down when one of its doors is entered
+     */
+    int wormButtons(int link) { return linkWormButtons[link]; }
+
+    /**
+     * @return the fields of the engine's pushers that can never move again
+     */
+    public BitSet frozenPushers(Engine engine) {
+        BitSet frozen = new BitSet(level.fieldCount);
+        freeze(engine, frozen);
+        return frozen;
+    }
+
+    /**
+     * @return whether the door link can never open again, given the engine's frozen pushers in {@code frozen}
+     */
+    private boolean isShut(int link, Engine engine, BitSet frozen) {
+        Level.DoorLink doorLink = level.doorLinks.get(link);
+        int holders = linkWormButtons[link];
+        int[] buttons = doorLink.buttonFields;
+        for (int id = 0; id < engine.pusherCount() && holders < buttons.length; id++) {
+            int fieldIndex = engine.pusherPosition(id);
+            if (frozen.get(fieldIndex) ? Ints.contains(buttons, fieldIndex) : linkUsefulFields[link].get(fieldIndex)) {
+                ++holders;
+            }
+        }
+        return holders < buttons.length;
+    }
+
+    /**
+     * Checks whether the worm is cut off from the goal for good, using {@code frozen} and {@code stack}, which must hold
+     * at least {@link Level#fieldCount} entries, as scratch space.
+     */
+    boolean isDeadEnd(Engine engine, BitSet frozen, int[] stack) {
+        freeze(engine, frozen);
+        boolean blocked = !frozen.isEmpty();
+        for (int link = 0; link < level.doorLinks.size(); link++) {
+            if (!isShut(link, engine, frozen)) continue;
+            // Doors that are occupied right now are open, whether the worm can get through is left to the search
+            for (int fieldIndex : level.doorLinks.get(link).doorFields) {
+                if (engine.isOccupied(fieldIndex)) continue;
+                frozen.set(fieldIndex);
+                blocked = true;
+            }
+        }
+        if (!blocked) return false;
+        // Flood fill from the head, walls, frozen pushers and shut doors can not be entered. The set marks them and the
+        // visited fields alike.
+        int size = 0;
+        stack[size++] = engine.head();
+        frozen.set(engine.head());
+        while (size > 0) {
+            int fieldIndex = stack[--size];
+            if (fieldIndex == level.playerGoal) return false;
+            for (int d = 0; d < directions.length; d++) {
+                int next = geometry.neighbor(fieldIndex, d);
+                if (next < 0 || walls[next] || frozen.get(next)) continue;
+                frozen.set(next);
+                stack[size++] = next;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the frozen pushers, starting with all of them and letting go of every one that may move along some axis
+     * while the others stay where they are. Pushers move in rows: a row of frozen pushers along an axis can be pushed
+     * along it unless one of its ends is a wall or the edge.
+     */
+    private void freeze(Engine engine, BitSet frozen) {
+        frozen.clear();
+        for (int id = 0; id < engine.pusherCount(); id++) frozen.set(engine.pusherPosition(id));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int fieldIndex = frozen.nextSetBit(0); fieldIndex >= 0; fieldIndex = frozen.nextSetBit(fieldIndex + 1)) {
+                if (canMoveAlong(fieldIndex, Direction.LEFT, Direction.RIGHT, frozen)
+                        || canMoveAlong(fieldIndex, Direction.UP, Direction.DOWN, frozen)) {
+                    frozen.clear(fieldIndex);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean canMoveAlong(int fieldIndex, Direction dir, Direction opposite, BitSet frozen) {
+        return isRowEndOpen(fieldIndex, dir, frozen) && isRowEndOpen(fieldIndex, opposite, frozen);
+    }
+
+    private boolean isRowEndOpen(int fieldIndex, Direction dir, BitSet frozen) {
+        int end = fieldIndex;
+        while (end >= 0 && frozen.get(end)) end = geometry.neighbor(end, dir);
+        return end >= 0 && !walls[end];
+    }
+
+    /**
+     * Walks backwards from the targets: a pusher gets from t - d to t if the worm can stand on t - 2d.
+     *
+     * @return the fields from which a pusher can be pushed onto one of {@code targets}, ignoring everything but walls
+     */
+    private BitSet pushableOnto(List<Integer> targets) {
+        BitSet useful = new BitSet(level.fieldCount);
+        int[] stack = new int[level.fieldCount];
+        int size = 0;
+        for (int fieldIndex : targets) {
+            if (useful.get(fieldIndex)) continue;
+            useful.set(fieldIndex);
+            stack[size++] = fieldIndex;
+        }
+        while (size > 0) {
+            int target = stack[--size];
+            for (Direction dir : directions) {
+                int from = geometry.neighbor(target, opposite(dir));
+                if (from < 0 || walls[from] || useful.get(from)) continue;
+                int behind = geometry.neighbor(from, opposite(dir));
+                if (behind < 0 || walls[behind]) continue;
+                useful.set(from);
+                stack[size++] = from;
+            }
+        }
+        return useful;
+    }
+
+    /**
+     * @return the largest number of {@code fields} within {@code distance} steps of one of them
+     */
+    private int maxWithinDistance(List<Integer> fields, int distance) {
+        int max = 0;
+        for (int a : fields) {
+            int count = 0;
+            for (int b : fields) {
+                if (geometry.distance(a, b) <= distance) ++count;
+            }
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    /**
+     * @return whether one of {@code fields} shares a row or column with one of {@code others}
+     */
+    private boolean isAnyInLine(List<Integer> fields, List<Integer> others) {
+        for (int a : fields) {
+            for (int b : others) {
+                if (geometry.x(a) == geometry.x(b) || geometry.y(a) == geometry.y(b)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Direction opposite(Direction dir) {
+        switch (dir) {
+            case UP: return Direction.DOWN;
+            case DOWN: return Direction.UP;
+            case LEFT: return Direction.RIGHT;
+            default: return Direction.LEFT;
+        }
+    }
+}
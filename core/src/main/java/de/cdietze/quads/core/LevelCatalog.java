@@ -0,0 +1,217 @@
+package de.cdietze.quads.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * The levels of one or more {@link Source}s, numbered in the order of the sources.
+ * <p>
+ * A level is only created on its first access and kept from then on, so the catalog hands out a single instance per
+ * level and knows the index of every level it handed out: {@link #indexOf(Level)} and {@link #next(Level)} are map
+ * lookups. Titles, dimensions, entity counts and solution lengths come from the sources without creating the level.
+ * <p>
+ * Every level has an id of the form {@code <source name>/<index in the source>}, which stays the same as long as its
+ * source only gets levels appended, even when other sources are added to or removed from the catalog.
+ * <p>
+ * Thread-safe: creating a level and looking up its index are synchronized, so threads that ask for the same level at
+ * the same time get the same instance.
+ */
+public final class LevelCatalog {
+
+    /**
+     * Levels by index together with the numbers a catalog can show without creating them. The catalog asks for each
+     * level at most once, so a source need not keep the levels it creates.
+     */
+    public interface Source {
+        /** Names the source in level ids, unique within a catalog */
+        String name();
+
+        int size();
+
+        String title(int index);
+
+        int width(int index);
+
+        int height(int index);
+
+        int pusherCount(int index);
+
+        int expandoCount(int index);
+
+        int doorLinkCount(int index);
+
+        /**
+         * @return the number of moves of the shortest solution or -1 if the source does not know it
+         */
+        int solutionLength(int index);
+
+        Level level(int index);
+    }
+
+    private final Source[] sources;
+    /** The catalog index of the first level of each source, followed by the size of the catalog */
+    private final int[] starts;
+    private final Map<String, Integer> sourcesByName = new HashMap<>();
+    private final Level[] levels;
+    private final Map<Level, Integer> indexes = new IdentityHashMap<>();
+
+    public LevelCatalog(Source... sources) {
+        checkArgument(sources.length > 0, "A catalog needs a source");
+        this.sources = Arrays.copyOf(sources, sources.length);
+        starts = new int[sources.length + 1];
+        for (int i = 0; i < sources.length; i++) {
+            checkArgument(sourcesByName.put(sources[i].name(), i) == null, "Duplicate source %s", sources[i].name());
+            starts[i + 1] = starts[i] + sources[i].size();
+        }
+        levels = new Level[starts[sources.length]];
+    }
+
+    /**
+     * @return a source of levels that are already in memory, with the numbers taken from the levels
+     */
+    public static Source source(final String name, final List<Level> levels) {
+        return new Source() {
+            @Override public String name() { return name; }
+            @Override public int size() { return levels.size(); }
+            @Override public String title(int index) { return levels.get(index).title; }
+            @Override public int width(int index) { return levels.get(index).dim.width; }
+            @Override public int height(int index) { return levels.get(index).dim.height; }
+            @Override public int pusherCount(int index) { return levels.get(index).pusherFields.length; }
+            @Override public int expandoCount(int index) { return levels.get(index).expandoFields.length; }
+            @Override public int doorLinkCount(int index) { return levels.get(index).doorLinks.size(); }
+            @Override public int solutionLength(int index) { return -1; }
+            @Override public Level level(int index) { return levels.get(index); }
+        };
+    }
+
+    public int size() { return levels.length; }
+
+    /**
+     * @return the level at {@code index}, created on the first call
+     */
+    public synchronized Level level(int index) {
+        checkElementIndex(index, levels.length);
+        Level level = levels[index];
+        if (level == null) {
+            int source = sourceOf(index);
+            level = sources[source].level(index - starts[source]);
+            levels[index] = level;
+            indexes.put(level, index);
+        }
+        return level;
+    }
+
+    /**
+     * @return the index of {@code level} or -1 if it was not handed out by this catalog
+     */
+    public synchronized int indexOf(Level level) {
+        Integer index = indexes.get(level);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the level after {@code level} or null if it is the last one or not handed out by this catalog
+     */
+    public Level next(Level level) {
+        int index = indexOf(level);
+        return index < 0 || index + 1 == levels.length ? null : level(index + 1);
+    }
+
+    public String id(int index) {
+        int source = sourceOf(index);
+        return sources[source].name() + "/" + (index - starts[source]);
+    }
+
+    /**
+     * @return the index of the level with the given {@link #id} or -1 if there is none
+     */
+    public int indexOf(String id) {
+        int slash = id.lastIndexOf('/');
+        Integer source = slash < 0 ? null : sourcesByName.get(id.substring(0, slash));
+        if (source == null) return -1;
+        int index;
+        try {
+            index = Integer.parseInt(id.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return index < 0 || index >= sources[source].size() ? -1 : starts[source] + index;
+    }
+
+    public String title(int index) {
+        int source = sourceOf(index);
+        return sources[source].title(index - starts[source]);
+    }
+
+    public int width(int index) {
+        int source = sourceOf(index);
+        return sources[source].width(index - starts[source]);
+    }
+
+    public int height(int index) {
+        int source = sourceOf(index);
+        return sources[source].height(index - starts[source]);
+    }
+
+    public int pusherCount(int index) {
+        int source = sourceOf(index);
+        return sources[source].pusherCount(index - starts[source]);
+    }
+
+    public int expandoCount(int index) {
+        int source = sourceOf(index);
+        return sources[source].expandoCount(index - starts[source]);
+    }
+
+    public int doorLinkCount(int index) {
+        int source = sourceOf(index);
+        return sources[source].doorLinkCount(index - starts[source]);
+    }
+
+    /**
+     * @return the number of moves of the shortest solution or -1 if it is not known
+     */
+    public int solutionLength(int index) {
+        int source = sourceOf(index);
+        return sources[source].solutionLength(index - starts[source]);
+    }
+
+    /**
+     * @return a view of the levels that creates each one on its first access and finds their indexes in constant time
+     */
+    public List<Level> levels() {
+        return new AbstractList<Level>() {
+            @Override public Level get(int index) { return level(index); }
+            @Override public int size() { return levels.length; }
+            @Override public int indexOf(Object o) { return o instanceof Level ? LevelCatalog.this.indexOf((Level) o) : -1; }
+            @Override public int lastIndexOf(Object o) { return indexOf(o); }
+            @Override public boolean contains(Object o) { return indexOf(o) >= 0; }
+        };
+    }
+
+    /**
+     * @return the source of the level at {@code index}, the last one that starts at or before it, which skips empty
+     * sources
+     */
+    private int sourceOf(int index) {
+        checkElementIndex(index, levels.length);
+        int low = 0;
+        int high = sources.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
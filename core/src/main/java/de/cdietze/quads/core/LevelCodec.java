@@ -0,0 +1,131 @@
+package de.cdietze.quads.core;
+
+import pythagoras.i.Dimension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The binary level pack format and the encoding of a single {@link Level} in it.
+ * <p>
+ * A pack is big-endian and starts with a header of {@link #headerSize} bytes: the {@link #magic} int, the
+ * {@link #version} short, a reserved short and the level count int, followed by a reserved int. Then comes an index
+ * entry of {@link #entrySize} bytes per level: the record's offset from the start of the pack (long), the record's
+ * length (int), the title's offset into the title table and its length in bytes (int and short), width, height, pusher,
+ * expando and door link count (shorts) and the length of the shortest solution or -1 (int). The title table follows
+ * the index and holds the UTF-8 titles, the records come last. The index alone tells everything but the layout, so a
+ * reader only decodes the levels that are played.
+ * <p>
+ * A record is a sequence of varints: the player's start and goal, then the walls, pushers and expandos, then the
+ * number of door links and each link's doors and buttons. Each of these field lists is its length followed by the
+ * zigzag encoded differences between consecutive fields, which take a byte each for levels read row by row.
+ */
+public final class LevelCodec {
+
+    /** "QLVP" */
+    public static final int magic = 0x514c5650;
+    public static final int version = 1;
+    public static final int headerSize = 16;
+    public static final int entrySize = 32;
+
+    private LevelCodec() {}
+
+    /**
+     * @return the record of {@code level}, without its title and dimension, which the index keeps
+     */
+    public static byte[] encode(Level level) {
+        Sink sink = new Sink();
+        sink.putVarint(level.playerStart);
+        sink.putVarint(level.playerGoal);
+        sink.putFields(level.wallFields);
+        sink.putFields(level.pusherFields);
+        sink.putFields(level.expandoFields);
+        sink.putVarint(level.doorLinks.size());
+        for (Level.DoorLink doorLink : level.doorLinks) {
+            sink.putFields(doorLink.doorFields);
+            sink.putFields(doorLink.buttonFields);
+        }
+        return sink.toByteArray();
+    }
+
+    /**
+     * @return the level whose record starts at {@code offset} in {@code bytes}
+     */
+    public static Level decode(String title, int width, int height, byte[] bytes, int offset) {
+        Source source = new Source(bytes, offset);
+        int playerStart = source.getVarint();
+        int playerGoal = source.getVarint();
+        int[] walls = source.getFields();
+        int[] pushers = source.getFields();
+        int[] expandos = source.getFields();
+        int linkCount = source.getVarint();
+        List<Level.DoorLink> doorLinks = new ArrayList<>(linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            int[] doors = source.getFields();
+            doorLinks.add(new Level.DoorLink(doors, source.getFields()));
+        }
+        return new Level(title, new Dimension(width, height), playerStart, playerGoal, walls, pushers, expandos,
+                doorLinks);
+    }
+
+    private static final class Sink {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        void putVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                put((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            put(value);
+        }
+
+        void putFields(int[] fields) {
+            putVarint(fields.length);
+            int previous = 0;
+            for (int fieldIndex : fields) {
+                int delta = fieldIndex - previous;
+                putVarint((delta << 1) ^ (delta >> 31));
+                previous = fieldIndex;
+            }
+        }
+
+        private void put(int b) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = (byte) b;
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(bytes, size); }
+    }
+
+    private static final class Source {
+        private final byte[] bytes;
+        private int position;
+
+        Source(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int getVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = bytes[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        int[] getFields() {
+            int[] fields = new int[getVarint()];
+            int previous = 0;
+            for (int i = 0; i < fields.length; i++) {
+                int zigzag = getVarint();
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                fields[i] = previous;
+            }
+            return fields;
+        }
+    }
+}
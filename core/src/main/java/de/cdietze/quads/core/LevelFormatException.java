@@ -0,0 +1,16 @@
+package de.cdietze.quads.core;
+
+/**
+ * Thrown when the text of a level cannot be read, telling where the problem is. Lines and columns count from 1.
+ */
+public class LevelFormatException extends IllegalArgumentException {
+
+    public final int line;
+    public final int column;
+
+    public LevelFormatException(int line, int column, String message) {
+        super("line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+}
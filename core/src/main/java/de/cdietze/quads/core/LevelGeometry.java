@@ -0,0 +1,66 @@
+package de.cdietze.quads.core;
+
+import pythagoras.i.IDimension;
+
+/**
+ * Lookup tables for the fields of a board, computed once by {@link Level#geometry()} and shared by everything that
+ * plays or draws the level.
+ * <p>
+ * {@link PointUtils} computes coordinates with a division per call, these tables turn the coordinates of a field and
+ * its neighbor in a {@link Direction} into a single array load. They work for boards of any shape.
+ */
+public final class LevelGeometry {
+
+    private static final Direction[] directions = Direction.values();
+
+    public final int width;
+    public final int height;
+    public final int fieldCount;
+    private final int[] xs;
+    private final int[] ys;
+    /** The field next to each field in each direction, -1 at the board's edge */
+    private final int[] neighbors;
+
+    public LevelGeometry(IDimension dim) {
+        width = dim.width();
+        height = dim.height();
+        fieldCount = width * height;
+        xs = new int[fieldCount];
+        ys = new int[fieldCount];
+        neighbors = new int[fieldCount * directions.length];
+        for (int y = 0, fieldIndex = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, fieldIndex++) {
+                xs[fieldIndex] = x;
+                ys[fieldIndex] = y;
+                for (Direction dir : directions) {
+                    int nx = x + dir.x();
+                    int ny = y + dir.y();
+                    boolean inside = nx >= 0 && nx < width && ny >= 0 && ny < height;
+                    neighbors[fieldIndex * directions.length + dir.ordinal()] = inside ? nx + ny * width : -1;
+                }
+            }
+        }
+    }
+
+    public int x(int fieldIndex) { return xs[fieldIndex]; }
+
+    public int y(int fieldIndex) { return ys[fieldIndex]; }
+
+    /**
+     * @return the index of the field next to {@code fieldIndex} in direction {@code dir} or -1 at the board's edge
+     */
+    public int neighbor(int fieldIndex, Direction dir) { return neighbors[fieldIndex * directions.length + dir.ordinal()]; }
+
+    /**
+     * Like {@link #neighbor(int, Direction)} for the direction with the given {@link Direction#ordinal()}, for loops over
+     * all directions.
+     */
+    public int neighbor(int fieldIndex, int dirOrdinal) { return neighbors[fieldIndex * directions.length + dirOrdinal]; }
+
+    /**
+     * @return the Manhattan distance between the two fields
+     */
+    public int distance(int fieldIndex, int otherFieldIndex) {
+        return Math.abs(xs[fieldIndex] - xs[otherFieldIndex]) + Math.abs(ys[fieldIndex] - ys[otherFieldIndex]);
+    }
+}
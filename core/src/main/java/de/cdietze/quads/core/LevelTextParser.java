@@ -0,0 +1,124 @@
+package de.cdietze.quads.core;
+
+import pythagoras.i.Dimension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a text level pack that is fed to it in chunks of any size, handing every level to a {@link Listener} as soon
+ * as it is complete.
+ * <p>
+ * A pack holds levels separated by blank lines, each a title line followed by the rows of its grid as read by
+ * {@link Level.Builder#read}. Lines may end with {@code \n} or {@code \r\n}. Only the current line and the level being
+ * read are kept, so packs of any size are read with the memory of their largest level. Mistakes are reported as
+ * {@link LevelFormatException}s with their line and column.
+ */
+public final class LevelTextParser {
+
+    public interface Listener {
+        void onLevel(Level level);
+    }
+
+    private final Listener listener;
+    private final StringBuilder line = new StringBuilder();
+    private int lineNumber;
+    /** The level being read, null between levels */
+    private Level.Builder builder;
+    private int titleLine;
+    private int width;
+    private int rows;
+
+    public LevelTextParser(Listener listener) { this(listener, 1); }
+
+    /**
+     * @param firstLine the number of the first line fed, for parsers that start in the middle of a pack
+     */
+    public LevelTextParser(Listener listener, int firstLine) {
+        this.listener = listener;
+        this.lineNumber = firstLine;
+    }
+
+    /**
+     * @return all levels of {@code text}
+     */
+    public static List<Level> parse(CharSequence text) {
+        final List<Level> levels = new ArrayList<>();
+        LevelTextParser parser = new LevelTextParser(new Listener() {
+            @Override public void onLevel(Level level) { levels.add(level); }
+        });
+        parser.feed(text);
+        parser.end();
+        return levels;
+    }
+
+    public void feed(char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) feed(chars[i]);
+    }
+
+    public void feed(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) feed(chars.charAt(i));
+    }
+
+    /**
+     * Reads the last level, which needs no blank line after it.
+     */
+    public void end() {
+        if (line.length() > 0) endLine();
+        if (builder != null) endLevel();
+    }
+
+    private void feed(char c) {
+        if (c == '\n') {
+            endLine();
+        } else if (c != '\r') {
+            line.append(c);
+        }
+    }
+
+    private void endLine() {
+        boolean blank = isBlank(line);
+        if (builder == null) {
+            if (!blank) startLevel();
+        } else if (blank) {
+            endLevel();
+        } else {
+            readRow();
+        }
+        line.setLength(0);
+        ++lineNumber;
+    }
+
+    private void startLevel() {
+        builder = new Level.Builder().title(line.toString());
+        titleLine = lineNumber;
+        rows = 0;
+    }
+
+    private void readRow() {
+        if (rows == 0) {
+            width = line.length();
+        } else {
+            Level.Builder.checkRowWidth(line.length(), width, lineNumber);
+        }
+        for (int x = 0; x < line.length(); x++) builder.readField(line.charAt(x), rows * width + x, lineNumber, x + 1);
+        ++rows;
+    }
+
+    private void endLevel() {
+        if (rows == 0) throw new LevelFormatException(titleLine + 1, 1, "Level has no rows");
+        if (builder.playerStart < 0) throw new LevelFormatException(titleLine, 1, "Level has no start field 'S'");
+        if (builder.playerGoal < 0) throw new LevelFormatException(titleLine, 1, "Level has no goal field 'G'");
+        builder.dim(new Dimension(width, rows));
+        Level level = builder.build();
+        builder = null;
+        listener.onLevel(level);
+    }
+
+    private static boolean isBlank(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+}
@@ -33,11 +33,11 @@ public class MainScreen extends Screen {
             @Override public void onEmit(Button event) {
                 Group group = UiUtils.createDialogGroup(plat);
                 final DialogKeeper.Dialog dialog = createDialog(AxisLayout.vertical(), UiUtils.newSheet(plat.graphics())).add(group).useShade().slideTopDown();
-                for (int i = 0; i < Levels.levels.size(); i++) {
-                    final Level level = Levels.levels.get(i);
-                    group.add(new Button(Levels.briefTitle(level)).onClick(new Slot<Button>() {
+                for (int i = 0; i < Levels.catalog.size(); i++) {
+                    final int levelIndex = i;
+                    group.add(new Button(Levels.briefTitle(levelIndex)).onClick(new Slot<Button>() {
                         @Override public void onEmit(Button event) {
-                            game.screens.push(new BoardScreen(game, level));
+                            game.screens.push(new BoardScreen(game, Levels.catalog.level(levelIndex)));
                         }
                     }));
                 }
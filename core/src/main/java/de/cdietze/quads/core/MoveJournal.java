@@ -0,0 +1,87 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The moves made on a {@link BoardState}, each stored as the few ints needed to take it back: the direction, the old
+ * head, where the new head had been in the tail, the tail segment that was removed, the number of pushed pushers and
+ * whether an expando was eaten or the level won.
+ * <p>
+ * Moves that were taken back stay in the journal until a new move is recorded, so they can be made again. The journal
+ * grows as needed and has no limit beyond memory.
+ */
+final class MoveJournal {
+
+    private static final int stride = 6;
+    private static final int ateFlag = 1;
+    private static final int wonFlag = 2;
+
+    private int[] entries = new int[stride * 64];
+    /** The number of moves that can be taken back */
+    private int undoCount;
+    /** The number of recorded moves, those after {@link #undoCount} can be made again */
+    private int moveCount;
+
+    int undoCount() { return undoCount; }
+
+    int redoCount() { return moveCount - undoCount; }
+
+    void clear() {
+        undoCount = 0;
+        moveCount = 0;
+    }
+
+    /**
+     * Records a move after the ones that can be taken back.
+     *
+     * @param redo whether the move is the next one that can be made again, which keeps the ones after it
+     */
+    void record(Direction dir, int oldHead, int targetTailIndex, int removedTailField, int pushCount, boolean ate,
+                boolean won, boolean redo) {
+        if (!redo) moveCount = undoCount;
+        int offset = undoCount * stride;
+        if (offset == entries.length) entries = Arrays.copyOf(entries, entries.length * 2);
+        entries[offset] = dir.ordinal();
+        entries[offset + 1] = oldHead;
+        entries[offset + 2] = targetTailIndex;
+        entries[offset + 3] = removedTailField;
+        entries[offset + 4] = pushCount;
+        entries[offset + 5] = (ate ? ateFlag : 0) | (won ? wonFlag : 0);
+        ++undoCount;
+        moveCount = Math.max(moveCount, undoCount);
+    }
+
+    /**
+     * @return the entry of the last move, which is taken back
+     */
+    int undo() {
+        checkState(undoCount > 0, "There is no move to take back");
+        return --undoCount * stride;
+    }
+
+    /**
+     * @return the direction of the move that can be made again next, with its {@link Direction#ordinal()}
+     */
+    int redoDirection() {
+        checkState(moveCount > undoCount, "There is no move to make again");
+        return entries[undoCount * stride];
+    }
+
+    int direction(int entry) { return entries[entry]; }
+
+    int oldHead(int entry) { return entries[entry + 1]; }
+
+    /** @return the index the new head had in the tail or -1 if it was a fresh field */
+    int targetTailIndex(int entry) { return entries[entry + 2]; }
+
+    /** @return the field of the removed oldest segment or -1 if the tail kept it */
+    int removedTailField(int entry) { return entries[entry + 3]; }
+
+    int pushCount(int entry) { return entries[entry + 4]; }
+
+    boolean ate(int entry) { return (entries[entry + 5] & ateFlag) != 0; }
+
+    boolean won(int entry) { return (entries[entry + 5] & wonFlag) != 0; }
+}
@@ -0,0 +1,45 @@
+package de.cdietze.quads.core;
+
+/**
+ * Reads the masks returned by {@link Engine#moveMask()} and {@link BoardState#moveMask()}, which tell for all four
+ * directions at once whether the player can move and what the move would do.
+ * <p>
+ * A mask has four groups of four bits, one bit per {@link Direction#ordinal()}: the legal moves, the moves that push
+ * pushers, the moves that eat an expando and the moves that win.
+ */
+public final class MoveMask {
+
+    /** The bits of the legal moves */
+    public static final int legal = 0xF;
+    /** The bits of the moves that push pushers */
+    public static final int pushes = 0xF << 4;
+    /** The bits of the moves that eat an expando */
+    public static final int eats = 0xF << 8;
+    /** The bits of the moves that win the level */
+    public static final int wins = 0xF << 12;
+
+    private MoveMask() {}
+
+    public static boolean isLegal(int mask, Direction dir) { return (mask & legal & bit(dir)) != 0; }
+
+    public static boolean isPush(int mask, Direction dir) { return (mask & pushes & bit(dir) << 4) != 0; }
+
+    public static boolean isEat(int mask, Direction dir) { return (mask & eats & bit(dir) << 8) != 0; }
+
+    public static boolean isWin(int mask, Direction dir) { return (mask & wins & bit(dir) << 12) != 0; }
+
+    /**
+     * @return the number of legal moves
+     */
+    public static int legalCount(int mask) { return Integer.bitCount(mask & legal); }
+
+    /**
+     * @return the bits of a legal move in the direction with the given ordinal and what it does
+     */
+    static int move(int dirOrdinal, boolean push, boolean eat, boolean win) {
+        int bit = 1 << dirOrdinal;
+        return bit | (push ? bit << 4 : 0) | (eat ? bit << 8 : 0) | (win ? bit << 12 : 0);
+    }
+
+    private static int bit(Direction dir) { return 1 << dir.ordinal(); }
+}
@@ -118,27 +118,14 @@ public final class PointUtils {
     }
 
     /**
-     * Expand orthogonally on all fields in set. Only adds fields where the predicate is true.
+     * Expand orthogonally on all fields in set. Only adds fields where the predicate is true. Use a {@link FloodFill}
+     * directly to fill repeatedly without boxing every field.
      *
      * @return the connected area as a BitSet
      */
-    public static BitSet expand(IDimension dim, BitSet set, Predicate<Integer> predicate) {
-        BitSet connectedFields = new BitSet();
-        connectedFields.or(set);
-        BitSet openFields = new BitSet();
-        openFields.or(connectedFields);
-        while (!openFields.isEmpty()) {
-            int field = openFields.nextSetBit(0);
-            openFields.set(field, false);
-            BitSet neighbors = neighbors(dim, field);
-            for (int neighbor = neighbors.nextSetBit(0); neighbor >= 0; neighbor = neighbors.nextSetBit(neighbor + 1)) {
-                if (connectedFields.get(neighbor)) continue;
-                if (predicate.apply(neighbor)) {
-                    connectedFields.set(neighbor);
-                    openFields.set(neighbor);
-                }
-            }
-        }
-        return connectedFields;
+    public static BitSet expand(IDimension dim, BitSet set, final Predicate<Integer> predicate) {
+        return new FloodFill(dim).fill(set, new FloodFill.FieldPredicate() {
+            @Override public boolean test(int fieldIndex) { return predicate.apply(fieldIndex); }
+        }, new BitSet());
     }
 }
@@ -0,0 +1,205 @@
+package de.cdietze.quads.core;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A* search over the states of a {@link Level}, using the {@link Engine} rules.
+ * <p>
+ * States are expanded in order of their distance from the start plus a lower bound on the moves left, see
+ * {@link SolverHeuristic}, so the first winning state expanded ends a shortest solution. Every state is stored once in
+ * a {@link StateTable} together with the shortest path to it found so far; a state reached by a shorter path later on
+ * is queued again. States the bound rules out and states after a push that leaves the worm cut off from the goal, see
+ * {@link Engine#isDeadEnd()}, are dropped right away.
+ */
+public final class Solver {
+
+    public static final class Result {
+        /** A shortest solution or null if there is none or the search was aborted */
+        public final Direction[] solution;
+        /** Whether all reachable states have been searched, i.e. whether a missing solution means there is none */
+        public final boolean exhausted;
+        public final long nodesExpanded;
+        public final long statesStored;
+        public final long elapsedMillis;
+        /** The number of bytes held by the search structures at their largest */
+        public final long peakBytes;
+
+        public Result(Direction[] solution, boolean exhausted, long nodesExpanded, long statesStored, long elapsedMillis,
+                      long peakBytes) {
+            this.solution = solution;
+            this.exhausted = exhausted;
+            this.nodesExpanded = nodesExpanded;
+            this.statesStored = statesStored;
+            this.elapsedMillis = elapsedMillis;
+            this.peakBytes = peakBytes;
+        }
+
+        public boolean isSolved() { return solution != null; }
+
+        public double statesPerSecond() { return statesStored * 1000d / Math.max(1L, elapsedMillis); }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("moves", solution == null ? -1 : solution.length)
+                    .add("exhausted", exhausted)
+                    .add("nodesExpanded", nodesExpanded)
+                    .add("statesStored", statesStored)
+                    .add("elapsedMillis", elapsedMillis)
+                    .add("statesPerSecond", (long) statesPerSecond())
+                    .add("peakBytes", peakBytes)
+                    .toString();
+        }
+    }
+
+    private static final Direction[] directions = Direction.values();
+
+    public final Level level;
+    private int maxStates = Integer.MAX_VALUE;
+
+    public Solver(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Aborts the search once this many states are stored.
+     */
+    public Solver maxStates(int maxStates) {
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    public Result solve() {
+        long startMillis = System.currentTimeMillis();
+        Engine engine = new Engine(level);
+        SolverHeuristic heuristic = new SolverHeuristic(level);
+        StateTable table = new StateTable();
+        long[] state = new long[StateSnapshot.maxWordCount(level)];
+        int startBound = heuristic.estimate(engine);
+        if (startBound == SolverHeuristic.unreachable) return result(null, true, 0, table, startMillis);
+        StateSnapshot.pack(engine, state, 0);
+        table.add(state, 0, StateSnapshot.wordCount(level, 0), engine.hash(), -1, -1);
+        int[] costs = new int[256];
+        int[] bounds = new int[256];
+        bounds[0] = startBound;
+        BitSet won = new BitSet();
+        OpenList open = new OpenList();
+        open.add(startBound, 0);
+
+        long expanded = 0;
+        while (!open.isEmpty()) {
+            int estimate = open.minEstimate();
+            int id = open.removeMin();
+            // A state is queued again when a shorter path to it is found, the older entries are stale
+            if (costs[id] + bounds[id] != estimate) continue;
+            if (won.get(id)) {
+                int[] path = table.path(id);
+                Direction[] solution = new Direction[path.length];
+                for (int i = 0; i < path.length; i++) solution[i] = directions[path[i]];
+                return result(solution, false, expanded, table, startMillis);
+            }
+            if (table.size() >= maxStates) {
+                return result(null, false, expanded, table, startMillis);
+            }
+            ++expanded;
+            int cost = costs[id] + 1;
+            table.restore(engine, id);
+            for (Direction dir : directions) {
+                if (!engine.tryMove(dir)) continue;
+                int bound = bound(engine, heuristic, bounds[id]);
+                if (bound == SolverHeuristic.unreachable) {
+                    engine.undo();
+                    continue;
+                }
+                int wordCount = StateSnapshot.wordCount(level, engine.tail().size());
+                Arrays.fill(state, 0, wordCount, 0L);
+                StateSnapshot.pack(engine, state, 0);
+                long hash = engine.hash();
+                engine.undo();
+                int known = table.indexOf(state, 0, wordCount, hash);
+                if (known >= 0) {
+                    if (cost >= costs[known]) continue;
+                    table.reparent(known, id, dir.ordinal());
+                    costs[known] = cost;
+                    bounds[known] = Math.max(bounds[known], bound);
+                    open.add(cost + bounds[known], known);
+                    continue;
+                }
+                int child = table.add(state, 0, wordCount, hash, id, dir.ordinal());
+                if (child == costs.length) {
+                    costs = Arrays.copyOf(costs, child * 2);
+                    bounds = Arrays.copyOf(bounds, child * 2);
+                }
+                costs[child] = cost;
+                bounds[child] = bound;
+                if (bound == 0) won.set(child);
+                open.add(cost + bound, child);
+            }
+        }
+        return result(null, true, expanded, table, startMillis);
+    }
+
+    /**
+     * @return a lower bound on the moves left to win after the engine's last move, 0 once it is won, or
+     * {@link SolverHeuristic#unreachable}
+     */
+    private static int bound(Engine engine, SolverHeuristic heuristic, int parentBound) {
+        if (engine.hasWon()) return 0;
+        // A push may have frozen pushers in a way that rules out winning
+        if (engine.lastPushCount() > 0 && engine.isDeadEnd()) return SolverHeuristic.unreachable;
+        int bound = heuristic.estimate(engine);
+        if (bound == SolverHeuristic.unreachable) return bound;
+        // The parent's bound holds for its children less the move, which keeps f from dropping along a path
+        return Math.max(bound, parentBound - 1);
+    }
+
+    private static Result result(Direction[] solution, boolean exhausted, long expanded, StateTable table,
+                                 long startMillis) {
+        return new Result(solution, exhausted, expanded, table.size(), System.currentTimeMillis() - startMillis,
+                table.allocatedBytes());
+    }
+
+    /**
+     * State ids by the estimated length of a solution through them, a stack per length. Among states of the same
+     * estimate the last one found is expanded first, which follows the most promising path down to the goal.
+     */
+    private static final class OpenList {
+        private int[][] stacks = new int[64][];
+        private int[] sizes = new int[64];
+        private int min = Integer.MAX_VALUE;
+        private int count;
+
+        boolean isEmpty() { return count == 0; }
+
+        void add(int estimate, int id) {
+            if (estimate >= stacks.length) {
+                int capacity = Math.max(stacks.length * 2, estimate + 1);
+                stacks = Arrays.copyOf(stacks, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            int[] stack = stacks[estimate];
+            if (stack == null) {
+                stack = stacks[estimate] = new int[16];
+            } else if (sizes[estimate] == stack.length) {
+                stack = stacks[estimate] = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[sizes[estimate]++] = id;
+            min = Math.min(min, estimate);
+            ++count;
+        }
+
+        int minEstimate() {
+            while (sizes[min] == 0) ++min;
+            return min;
+        }
+
+        int removeMin() {
+            int estimate = minEstimate();
+            --count;
+            return stacks[estimate][--sizes[estimate]];
+        }
+    }
+}
@@ -0,0 +1,938 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lower bounds on the number of moves left to win from a state of an {@link Engine}, for the A* search of
+ * {@link Solver}. Everything that does not depend on the state is computed once from the {@link Level}.
+ * <p>
+ * The bounds count moves onto fields, and moving onto an expando field is counted as free. Every expando can be eaten
+ * once and every meal is a move, so a bound that needs the worm to grow can add the expandos it has to eat on top:
+ * <ul>
+ * <li>The head has to walk to the goal.</li>
+ * <li>Pushers in a row that walls or expandos keep from moving across it only move with the whole row, which takes as
+ * much power as the row is long. Until the worm is that strong the head can not get onto their fields, and then only
+ * along the row from an end with room to push it. So the head may have to eat its way there, in the order of meals
+ * that opens the way soonest.</li>
+ * <li>If the doors of a link cut the head off from the goal, it has to walk onto each button of the link no pusher can
+ * get to, then onto one of the doors and from there to the goal. Before the first door is entered the worm is made of
+ * the fields it visited last, which are connected and hold down these buttons and the head next to the door, or a
+ * line of pushers away from it. The smallest such set of fields tells how much the worm has to grow and if it can grow
+ * that much at all.</li>
+ * <li>Pushers have to cover the buttons the worm can not hold down. A move pushes at most as many pushers as the
+ * worm has power, and each of them only a field further. More power takes moves that eat expandos and push nothing.
+ * All of it happens before the worm walks through a door to the goal.</li>
+ * </ul>
+ * Every move takes the head one field further, so the moves left are even exactly when the head is an even number of
+ * fields away from the goal, and the bound is rounded up to match.
+ * <p>
+ * The bounds drop by at most one with every move that neither pushes nor eats, so the search can mostly expand every
+ * state once. Pushes and meals may make them drop faster, which {@link Solver} handles by reopening states it finds a
+ * shorter path to.
+ */
+final class SolverHeuristic {
+
+    /** The bound of states from which the level can not be won */
+    static final int unreachable = Integer.MAX_VALUE;
+
+    private static final int infinity = Integer.MAX_VALUE / 4;
+    /** The most buttons of a link {@link #entries} looks at one by one */
+    private static final int maxHeldButtonsSearch = 10;
+    /** The most pushers for which {@link #matchPushes} gives each button a pusher of its own */
+    private static final int maxMatchedPushers = 10;
+    /** The most expandos left for which {@link #planMeals} tries every order of eating them */
+    private static final int maxMealSearch = 6;
+    private static final Direction[] directions = Direction.values();
+    private static final int allEntries = (1 << directions.length) - 1;
+
+    private final Level level;
+    private final LevelGeometry geometry;
+    private final boolean[] walls;
+    /** 0 for expando fields, 1 for all others */
+    private final int[] moveCosts;
+    private final int[] goalCosts;
+    private final Link[] links;
+    private final int[] buttonPushes;
+    private final int[] buttonPushSums;
+    private final int[] pusherMatches;
+    private final int[] fewestPushes = new int[1];
+    /** Walls, and the goal if a pusher pushed onto it could never leave it again, which no solution does */
+    private final boolean[] pusherWalls;
+    /** The bounds of {@link #meals} from every field for the plans made so far */
+    private final BoundTable plans;
+    /** The {@link Engine#pieceHash} and id of the plan in use */
+    private long plannedPieces;
+    private int plannedId;
+    private boolean mealsPlanned;
+    /** The ids of the expandos left */
+    private final int[] mealIds;
+    private int mealCount;
+    /** The cost of eating each of {@link #mealIds} first and going on to the goal */
+    private final int[] firstMeals;
+    /**
+     * The directions in which the head can walk onto each field, a bit per {@link Direction} ordinal, and the fields
+     * that end a walk, before it eats
+     */
+    private final int[] hungryEntries;
+    private final boolean[] hungryTerminals;
+    private final int[] stageEntries;
+    private final boolean[] stageTerminals;
+    private final boolean[] obstacles;
+    private final int[] stageCosts;
+    private final int[] stageQueue;
+    /** The goal and the expandos left, for {@link #walkBack} */
+    private final int[] mealSources;
+    private int[] mealCosts = new int[0];
+
+    /** What a door link between the head and the goal asks for */
+    private static final class Link {
+        int[] doors;
+        /** The fields from which the goal can be reached without passing a door of the link */
+        BitSet free;
+        /** The buttons no pusher can get onto, which the worm has to walk onto */
+        int[] wormButtons;
+        /** The cost of walking to each of {@link #wormButtons} and to each door from every field */
+        int[][] buttonCosts;
+        int[][] doorCosts;
+        /**
+         * The cost of walking from worm button {@code i} onto all buttons of {@code mask}, then a door and the goal, at
+         * {@code mask * wormButtons.length + i}
+         */
+        int[] tours;
+        /** The fewest fields of a worm that holds down the worm buttons with its head next to a door */
+        int wormSize;
+        /** The lines from each door along which the head can enter it for the first time, when there are pushers */
+        Entry[] entries;
+        /** Whether pushers have to be pushed before a door can be entered */
+        boolean pushesNeeded;
+        /** The fewest moves from the last move before a door is entered to the goal, through a door */
+        int exitCost;
+        /** The number of pushes to get a pusher from every field onto each button */
+        int[][] pushes;
+        /** The results of {@link #pushes(Engine, Link)} so far */
+        BoundTable knownPushes = new BoundTable(1);
+    }
+
+    /**
+     * The fields in a line from a door, ordered by distance, that the head can be on when the door is entered for the
+     * first time. From all but the first one it pushes the pushers on the fields before into the door.
+     */
+    private static final class Entry {
+        /** The number of buttons pushers have to cover from each field, because the longest worm can not hold them */
+        int[] pusherButtons;
+        /** The number of pushes to get a pusher from every field onto each field of the line */
+        int[][] linePushes;
+    }
+
+    SolverHeuristic(Level level) {
+        this.level = level;
+        geometry = level.geometry();
+        walls = new boolean[level.fieldCount];
+        for (int fieldIndex : level.wallFields) walls[fieldIndex] = true;
+        moveCosts = new int[level.fieldCount];
+        Arrays.fill(moveCosts, 1);
+        for (int fieldIndex : level.expandoFields) moveCosts[fieldIndex] = 0;
+        goalCosts = walkCosts(level.playerGoal, walls);
+        links = new Link[level.doorLinks.size()];
+        for (int i = 0; i < links.length; i++) links[i] = link(i);
+        int maxButtons = 0;
+        for (Level.DoorLink doorLink : level.doorLinks) maxButtons = Math.max(maxButtons, doorLink.buttonFields.length);
+        buttonPushes = new int[maxButtons];
+        buttonPushSums = new int[maxButtons + 1];
+        pusherMatches = new int[1 << Math.min(level.pusherFields.length, maxMatchedPushers)];
+        pusherWalls = Arrays.copyOf(walls, walls.length);
+        pusherWalls[level.playerGoal] = isStuck(level.playerGoal, Direction.UP, walls)
+                && isStuck(level.playerGoal, Direction.LEFT, walls);
+        plans = new BoundTable(level.fieldCount);
+        mealIds = new int[level.expandoFields.length];
+        firstMeals = new int[level.expandoFields.length];
+        hungryEntries = new int[level.fieldCount];
+        hungryTerminals = new boolean[level.fieldCount];
+        stageEntries = new int[level.fieldCount];
+        stageTerminals = new boolean[level.fieldCount];
+        obstacles = new boolean[level.fieldCount];
+        stageCosts = new int[level.fieldCount];
+        stageQueue = new int[level.fieldCount];
+        mealSources = new int[level.expandoFields.length + 1];
+    }
+
+    /**
+     * @return a lower bound on the moves left to win from the engine's state or {@link #unreachable}
+     */
+    int estimate(Engine engine) {
+        int head = engine.head();
+        int bound = goalCosts[head];
+        if (bound >= infinity) return unreachable;
+        int wormSize = engine.tail().size() + 1;
+        bound = Math.max(bound, meals(engine));
+        if (bound >= infinity) return unreachable;
+        for (Link link : links) {
+            if (link.free.get(head) || isAnyOccupied(engine, link.doors)) continue;
+            int growth = Math.max(0, link.wormSize - wormSize);
+            if (growth > engine.expandosLeft()) return unreachable;
+            bound = Math.max(bound, tour(engine, link) + growth);
+            if (link.pushesNeeded) bound = Math.max(bound, pusherMoves(engine, link) + link.exitCost);
+            if (bound >= infinity) return unreachable;
+        }
+        // Every move takes the head to a field of the other colour of the chessboard
+        return bound + ((bound ^ geometry.distance(head, level.playerGoal)) & 1);
+    }
+
+    /**
+     * Some pushers can only move in a row with others, when walls or expandos keep each of them from moving across the
+     * row. Before the worm has as much power as the row is long, the head can not get onto their fields. Eating an
+     * expando makes the worm stronger and takes the expando out of the way, so the head walks from meal to meal, each
+     * time with more of the board open, until it can get to the goal.
+     *
+     * @return the cost of the cheapest such walk to the goal, eating expandos on the way where it has to
+     */
+    private int meals(Engine engine) {
+        if (pusherWalls[level.playerGoal] && engine.pusherAt(level.playerGoal) >= 0) return infinity;
+        if (!mealsPlanned || engine.pieceHash() != plannedPieces) plan(engine);
+        return plans.bound(plannedId, engine.head());
+    }
+
+    /**
+     * Takes the plan for the engine's pushers and expandos from {@link #plans}, or makes it if there is none yet.
+     */
+    private void plan(Engine engine) {
+        plannedPieces = engine.pieceHash();
+        mealsPlanned = true;
+        plannedId = plans.indexOf(plannedPieces);
+        if (plannedId >= 0) return;
+        planMeals(engine);
+        // The head walks to the goal or to the first meal, from wherever it is
+        int sourceCount = 0;
+        mealSources[sourceCount++] = level.playerGoal;
+        stageCosts[level.playerGoal] = 0;
+        for (int i = 0; i < mealCount; i++) {
+            int fieldIndex = level.expandoFields[mealIds[i]];
+            mealSources[sourceCount++] = fieldIndex;
+            stageCosts[fieldIndex] = firstMeals[i];
+        }
+        walkBack(mealSources, sourceCount, hungryEntries, hungryTerminals, stageCosts);
+        plannedId = plans.add(plannedPieces, stageCosts);
+    }
+
+    /**
+     * Tries every order of eating the expandos left if there are few, otherwise bounds what comes after the first meal
+     * by the walk from there to the goal.
+     */
+    private void planMeals(Engine engine) {
+        findMeals(engine);
+        int power = engine.tail().size() + 1;
+        stage(engine, 0, power, hungryEntries, hungryTerminals);
+        if (mealCount > maxMealSearch) {
+            for (int i = 0; i < mealCount; i++) firstMeals[i] = goalCosts[level.expandoFields[mealIds[i]]];
+            return;
+        }
+        int count = mealCount;
+        if (mealCosts.length < (1 << count) * count) mealCosts = new int[(1 << count) * count];
+        int[] costs = stageCosts;
+        // The cost from the last meal of each set to the goal, larger sets first
+        for (int mask = (1 << count) - 1; mask > 0; mask--) {
+            stage(engine, mask, power + Integer.bitCount(mask), stageEntries, stageTerminals);
+            for (int i = 0; i < count; i++) {
+                if ((mask & 1 << i) == 0) continue;
+                walk(level.expandoFields[mealIds[i]], stageEntries, stageTerminals, costs);
+                int best = costs[level.playerGoal];
+                for (int j = 0; j < count; j++) {
+                    int cost = costs[level.expandoFields[mealIds[j]]];
+                    if ((mask & 1 << j) != 0 || cost >= infinity) continue;
+                    best = Math.min(best, cost + mealCosts[(mask | 1 << j) * count + j]);
+                }
+                mealCosts[mask * count + i] = Math.min(best, infinity);
+            }
+        }
+        for (int i = 0; i < count; i++) firstMeals[i] = mealCosts[(1 << i) * count + i];
+    }
+
+    private void findMeals(Engine engine) {
+        mealCount = 0;
+        for (int id = 0; id < level.expandoFields.length; id++) {
+            if (engine.expandoAt(level.expandoFields[id]) >= 0) mealIds[mealCount++] = id;
+        }
+    }
+
+    /**
+     * Finds how the head can walk once it ate the expandos of {@code mask}, by their index in {@link #mealIds}: onto
+     * every field but walls and the fields of pushers that take more than {@code power} to move. The expandos left and
+     * the goal end a walk.
+     * <p>
+     * The head gets onto the field of a pusher in a row the first time by pushing the row along, from one of its ends,
+     * so the fields of rows that can not have moved yet are only entered along the row and with room to push it. Later
+     * moves may come from anywhere, which does not matter, as only the first move onto each field of a walk counts.
+     * Rows as long as the power can not have moved before this stage, and no row moved before the first one.
+     */
+    private void stage(Engine engine, int mask, int power, int[] entries, boolean[] terminals) {
+        System.arraycopy(pusherWalls, 0, obstacles, 0, obstacles.length);
+        for (int i = 0; i < mealCount; i++) {
+            if ((mask & 1 << i) == 0) obstacles[level.expandoFields[mealIds[i]]] = true;
+        }
+        terminals(mask, terminals);
+        for (int fieldIndex = 0; fieldIndex < entries.length; fieldIndex++) {
+            entries[fieldIndex] = walls[fieldIndex] ? 0 : allEntries;
+        }
+        int fixedLength = mask == 0 ? 1 : power;
+        for (int id = 0; id < engine.pusherCount(); id++) {
+            int fieldIndex = engine.pusherPosition(id);
+            entries[fieldIndex] = pusherEntries(engine, fieldIndex, power, fixedLength);
+        }
+    }
+
+    /**
+     * Marks the goal and the expandos left once those of {@code mask} are eaten.
+     */
+    private void terminals(int mask, boolean[] terminals) {
+        Arrays.fill(terminals, false);
+        terminals[level.playerGoal] = true;
+        for (int i = 0; i < mealCount; i++) {
+            if ((mask & 1 << i) == 0) terminals[level.expandoFields[mealIds[i]]] = true;
+        }
+    }
+
+    /**
+     * @param fixedLength the length from which on rows are still where they are now
+     * @return the directions in which the head can first walk onto the field of the pusher on it, with
+     * {@link #obstacles} that stay where they are
+     */
+    private int pusherEntries(Engine engine, int fieldIndex, int power, int fixedLength) {
+        boolean stuckAcross = isStuck(fieldIndex, Direction.UP, obstacles);
+        boolean stuckAlong = isStuck(fieldIndex, Direction.LEFT, obstacles);
+        if (!stuckAcross && !stuckAlong) return allEntries;
+        if (stuckAcross && stuckAlong) return 0;
+        // A pusher that can not move across the row moves along with the whole row
+        Direction back = stuckAcross ? Direction.LEFT : Direction.UP;
+        Direction forth = opposite(back);
+        Direction across = stuckAcross ? Direction.UP : Direction.LEFT;
+        int before = rowMembers(engine, fieldIndex, back, across);
+        int after = rowMembers(engine, fieldIndex, forth, across);
+        int length = before + 1 + after;
+        int backEnd = neighbor(fieldIndex, back, before + 1);
+        int forthEnd = neighbor(fieldIndex, forth, after + 1);
+        if (!isOpen(backEnd) || !isOpen(forthEnd) || length > power) return 0;
+        // A shorter row may have been pushed out of the way before
+        if (length < fixedLength) return allEntries;
+        int backRun = run(backEnd, back, across);
+        int forthRun = run(forthEnd, forth, across);
+        boolean backExit = isOpen(neighbor(backEnd, back, backRun));
+        boolean forthExit = isOpen(neighbor(forthEnd, forth, forthRun));
+        // Pushers that leave the row where they can move across make it shorter, as long as they are not pushed out
+        // past this field
+        int backEscapes = backExit ? Math.max(0, after - backRun) : 0;
+        int forthEscapes = forthExit ? Math.max(0, before - forthRun) : 0;
+        int entries = 0;
+        if (backExit || backRun > after - forthEscapes) entries |= 1 << back.ordinal();
+        if (forthExit || forthRun > before - backEscapes) entries |= 1 << forth.ordinal();
+        return entries;
+    }
+
+    /**
+     * @return the number of pushers next to the field towards {@code dir} that can not move along {@code across}
+     */
+    private int rowMembers(Engine engine, int fieldIndex, Direction dir, Direction across) {
+        int count = 0;
+        int next = geometry.neighbor(fieldIndex, dir);
+        while (next >= 0 && engine.pusherAt(next) >= 0 && isStuck(next, across, obstacles)) {
+            ++count;
+            next = geometry.neighbor(next, dir);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of fields from {@code fieldIndex} on towards {@code dir} that keep pushers from moving along
+     * {@code across}
+     */
+    private int run(int fieldIndex, Direction dir, Direction across) {
+        int count = 0;
+        int next = fieldIndex;
+        while (isOpen(next) && isStuck(next, across, obstacles)) {
+            ++count;
+            next = geometry.neighbor(next, dir);
+        }
+        return count;
+    }
+
+    private boolean isOpen(int fieldIndex) { return fieldIndex >= 0 && !obstacles[fieldIndex]; }
+
+    /**
+     * @return whether a pusher on the field can not move along the axis of {@code dir}, as there is an obstacle or the
+     * edge on one side
+     */
+    private boolean isStuck(int fieldIndex, Direction dir, boolean[] obstacles) {
+        int next = geometry.neighbor(fieldIndex, dir);
+        int previous = geometry.neighbor(fieldIndex, opposite(dir));
+        return next < 0 || obstacles[next] || previous < 0 || obstacles[previous];
+    }
+
+    /**
+     * Walks from {@code from} onto fields in the directions of {@code entries}, a move at a time, without passing
+     * {@code terminals}.
+     */
+    private void walk(int from, int[] entries, boolean[] terminals, int[] costs) {
+        Arrays.fill(costs, infinity);
+        int[] queue = stageQueue;
+        int head = 0;
+        int tail = 0;
+        costs[from] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int fieldIndex = queue[head++];
+            if (fieldIndex != from && terminals[fieldIndex]) continue;
+            for (int d = 0; d < directions.length; d++) {
+                int next = geometry.neighbor(fieldIndex, d);
+                if (next < 0 || (entries[next] & 1 << d) == 0 || costs[next] < infinity) continue;
+                costs[next] = costs[fieldIndex] + 1;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * The reverse of {@link #walk}: finds the cheapest walk from every field to one of the {@code sources}, each of
+     * which comes with the cost already in {@code costs} of going on from there.
+     */
+    private void walkBack(int[] sources, int sourceCount, int[] entries, boolean[] terminals, int[] costs) {
+        // Sources by cost, so they join the queue in order and it stays sorted
+        for (int i = 1; i < sourceCount; i++) {
+            int source = sources[i];
+            int j = i;
+            for (; j > 0 && costs[sources[j - 1]] > costs[source]; --j) sources[j] = sources[j - 1];
+            sources[j] = source;
+        }
+        int[] queue = stageQueue;
+        int head = 0;
+        int tail = 0;
+        int next = 0;
+        for (int fieldIndex = 0; fieldIndex < costs.length; fieldIndex++) {
+            if (!terminals[fieldIndex]) costs[fieldIndex] = infinity;
+        }
+        while (head < tail || next < sourceCount) {
+            int fieldIndex;
+            if (next < sourceCount && (head == tail || costs[sources[next]] <= costs[queue[head]])) {
+                fieldIndex = sources[next++];
+            } else {
+                fieldIndex = queue[head++];
+            }
+            if (costs[fieldIndex] >= infinity) continue;
+            for (int d = 0; d < directions.length; d++) {
+                if ((entries[fieldIndex] & 1 << d) == 0) continue;
+                // The walk got here with a move towards d, from the field on the other side
+                int previous = geometry.neighbor(fieldIndex, opposite(directions[d]));
+                if (previous < 0 || terminals[previous] || costs[previous] < infinity) continue;
+                costs[previous] = costs[fieldIndex] + 1;
+                queue[tail++] = previous;
+            }
+        }
+    }
+
+    /**
+     * @return the field {@code distance} fields away towards {@code dir}, -1 beyond the edge
+     */
+    private int neighbor(int fieldIndex, Direction dir, int distance) {
+        for (int i = 0; i < distance && fieldIndex >= 0; i++) fieldIndex = geometry.neighbor(fieldIndex, dir);
+        return fieldIndex;
+    }
+
+    private static Direction opposite(Direction dir) {
+        switch (dir) {
+            case UP: return Direction.DOWN;
+            case DOWN: return Direction.UP;
+            case LEFT: return Direction.RIGHT;
+            default: return Direction.LEFT;
+        }
+    }
+
+    /**
+     * @return the cost of walking onto the worm buttons of the link that are not held down, a door and the goal
+     */
+    private int tour(Engine engine, Link link) {
+        int head = engine.head();
+        int count = link.wormButtons.length;
+        int mask = 0;
+        for (int i = 0; i < count; i++) {
+            int button = link.wormButtons[i];
+            if (button != head && !engine.tail().contains(button)) mask |= 1 << i;
+        }
+        int best = infinity;
+        if (mask == 0) {
+            for (int i = 0; i < link.doors.length; i++) {
+                best = Math.min(best, link.doorCosts[i][head] + goalCosts[link.doors[i]]);
+            }
+            return best;
+        }
+        for (int i = 0; i < count; i++) {
+            if ((mask & 1 << i) == 0) continue;
+            best = Math.min(best, link.buttonCosts[i][head] + link.tours[mask * count + i]);
+        }
+        return best;
+    }
+
+    /**
+     * @return the moves needed to push pushers onto the buttons the worm can not hold down and onto the line into a
+     * door the head pushes them along, for the entry that needs the fewest
+     */
+    private int pusherMoves(Engine engine, Link link) {
+        int fewest = pushes(engine, link);
+        if (fewest >= infinity) return infinity;
+        // A move pushes as many pushers as the worm has power, which only grows by eating, and eating is no push
+        int power = engine.tail().size() + 1;
+        int moves = infinity;
+        for (int eaten = 0; eaten <= engine.expandosLeft(); eaten++) {
+            int pushers = Math.min(engine.pusherCount(), power + eaten);
+            moves = Math.min(moves, (fewest + pushers - 1) / pushers + eaten);
+        }
+        return moves;
+    }
+
+    /**
+     * Most moves push nothing, so the result for each set of pushers is kept.
+     *
+     * @return the pushes of the entry that needs the fewest
+     */
+    private int pushes(Engine engine, Link link) {
+        int known = link.knownPushes.indexOf(engine.pieceHash());
+        if (known >= 0) return link.knownPushes.bound(known, 0);
+        int count = link.pushes.length;
+        int[] sums = buttonPushSums;
+        if (engine.pusherCount() <= maxMatchedPushers) {
+            matchPushes(engine, link);
+        } else {
+            int[] pushes = buttonPushes;
+            for (int i = 0; i < count; i++) pushes[i] = fewestPushes(engine, link.pushes[i]);
+            sort(pushes, count);
+            for (int i = 0; i < count; i++) sums[i + 1] = Math.min(infinity, sums[i] + pushes[i]);
+        }
+        int fewest = infinity;
+        for (Entry entry : link.entries) {
+            int line = 0;
+            for (int i = 0; i < entry.pusherButtons.length && line < fewest; i++) {
+                fewest = Math.min(fewest, line + sums[entry.pusherButtons[i]]);
+                line = Math.min(infinity, line + fewestPushes(engine, entry.linePushes[i]));
+            }
+        }
+        fewestPushes[0] = fewest;
+        link.knownPushes.add(engine.pieceHash(), fewestPushes);
+        return fewest;
+    }
+
+    /**
+     * Finds the fewest pushes to cover any number of the link's buttons, each with a pusher of its own, into
+     * {@link #buttonPushSums}.
+     */
+    private void matchPushes(Engine engine, Link link) {
+        int pusherCount = engine.pusherCount();
+        int[] costs = pusherMatches;
+        Arrays.fill(costs, 0, 1 << pusherCount, infinity);
+        costs[0] = 0;
+        for (int[] pushes : link.pushes) {
+            // Larger sets of pushers first, so each button is covered once
+            for (int used = (1 << pusherCount) - 1; used >= 0; used--) {
+                if (costs[used] >= infinity) continue;
+                for (int id = 0; id < pusherCount; id++) {
+                    if ((used & 1 << id) != 0) continue;
+                    int cost = costs[used] + pushes[engine.pusherPosition(id)];
+                    if (cost < costs[used | 1 << id]) costs[used | 1 << id] = cost;
+                }
+            }
+        }
+        int[] sums = buttonPushSums;
+        Arrays.fill(sums, infinity);
+        for (int used = 0; used < 1 << pusherCount; used++) {
+            int covered = Integer.bitCount(used);
+            if (covered < sums.length) sums[covered] = Math.min(sums[covered], costs[used]);
+        }
+    }
+
+    private static int fewestPushes(Engine engine, int[] pushes) {
+        int fewest = infinity;
+        for (int id = 0; id < engine.pusherCount(); id++) fewest = Math.min(fewest, pushes[engine.pusherPosition(id)]);
+        return fewest;
+    }
+
+    private Link link(int index) {
+        Level.DoorLink doorLink = level.doorLinks.get(index);
+        Link link = new Link();
+        link.doors = doorLink.doorFields;
+        boolean[] blocked = Arrays.copyOf(walls, walls.length);
+        for (int door : link.doors) blocked[door] = true;
+        link.free = new BitSet(level.fieldCount);
+        int[] freeCosts = walkCosts(level.playerGoal, blocked);
+        for (int fieldIndex = 0; fieldIndex < level.fieldCount; fieldIndex++) {
+            if (freeCosts[fieldIndex] < infinity) link.free.set(fieldIndex);
+        }
+
+        int[] buttons = doorLink.buttonFields;
+        link.pushes = new int[buttons.length][];
+        int[] wormButtons = new int[buttons.length];
+        int wormButtonCount = 0;
+        for (int i = 0; i < buttons.length; i++) {
+            link.pushes[i] = pushCosts(buttons[i]);
+            boolean pushable = false;
+            for (int fieldIndex : level.pusherFields) pushable |= link.pushes[i][fieldIndex] < infinity;
+            if (!pushable) wormButtons[wormButtonCount++] = buttons[i];
+        }
+        link.wormButtons = Arrays.copyOf(wormButtons, wormButtonCount);
+
+        link.buttonCosts = new int[wormButtonCount][];
+        for (int i = 0; i < wormButtonCount; i++) link.buttonCosts[i] = walkCosts(link.wormButtons[i], walls);
+        link.doorCosts = new int[link.doors.length][];
+        for (int i = 0; i < link.doors.length; i++) link.doorCosts[i] = walkCosts(link.doors[i], walls);
+        link.tours = tours(link);
+        link.exitCost = infinity;
+        for (int door : link.doors) link.exitCost = Math.min(link.exitCost, 1 + goalCosts[door]);
+
+        int[] entryFields = entryFields(link.doors, blocked);
+        int[][] terminals = new int[wormButtonCount + 1][];
+        for (int i = 0; i < wormButtonCount; i++) terminals[i] = new int[]{link.wormButtons[i]};
+        terminals[wormButtonCount] = entryFields;
+        int[][] sizes = connectedSetSizes(terminals, blocked);
+        link.wormSize = smallest(sizes[sizes.length - 1]);
+        link.entries = entries(link.doors, blocked, buttons, level.analysis().wormButtons(index));
+        for (Entry entry : link.entries) link.pushesNeeded |= entry.pusherButtons[0] > 0;
+        return link;
+    }
+
+    private int[] tours(Link link) {
+        int count = link.wormButtons.length;
+        int[] tours = new int[(1 << count) * count];
+        for (int mask = 1; mask < 1 << count; mask++) {
+            for (int i = 0; i < count; i++) {
+                if ((mask & 1 << i) == 0) continue;
+                int from = link.wormButtons[i];
+                int rest = mask & ~(1 << i);
+                int best = infinity;
+                if (rest == 0) {
+                    for (int d = 0; d < link.doors.length; d++) {
+                        best = Math.min(best, link.doorCosts[d][from] + goalCosts[link.doors[d]]);
+                    }
+                } else {
+                    for (int j = 0; j < count; j++) {
+                        if ((rest & 1 << j) == 0) continue;
+                        best = Math.min(best, link.buttonCosts[j][from] + tours[rest * count + j]);
+                    }
+                }
+                tours[mask * count + i] = Math.min(best, infinity);
+            }
+        }
+        return tours;
+    }
+
+    /**
+     * The head is next to a door when it walks in. It may also push a line of pushers into the door from as far as the
+     * longest worm has power, but not past a wall.
+     *
+     * @return the fields the head can be on when a door of the link is entered for the first time
+     */
+    private int[] entryFields(int[] doors, boolean[] blocked) {
+        int reach = entryReach();
+        int[] fields = new int[doors.length * directions.length * reach];
+        int count = 0;
+        for (int door : doors) {
+            for (int d = 0; d < directions.length; d++) {
+                int next = geometry.neighbor(door, d);
+                for (int distance = 1; distance <= reach && next >= 0 && !blocked[next]; distance++) {
+                    fields[count++] = next;
+                    next = geometry.neighbor(next, d);
+                }
+            }
+        }
+        return Arrays.copyOf(fields, count);
+    }
+
+    /**
+     * When a door of the link is entered for the first time all buttons are held down, those the worm does not hold by
+     * pushers. The worm is connected and has its head on one of the {@link #entryFields} then, with a pusher on every
+     * field between the head and the door.
+     *
+     * @param wormButtons the most buttons the worm can hold down anyway
+     * @return the entries of the link, none if there are no pushers
+     */
+    private Entry[] entries(int[] doors, boolean[] blocked, int[] buttons, int wormButtons) {
+        if (level.pusherFields.length == 0) return new Entry[0];
+        int longest = 1 + level.expandoFields.length;
+        int[][] sizes = null;
+        // The sets grow with 3^buttons, beyond that the worm is assumed to hold as many buttons as it has fields
+        if (buttons.length <= maxHeldButtonsSearch) {
+            int[][] groups = new int[buttons.length][];
+            for (int i = 0; i < buttons.length; i++) groups[i] = new int[]{buttons[i]};
+            sizes = connectedSetSizes(groups, blocked);
+        }
+        int reach = entryReach();
+        Entry[] entries = new Entry[doors.length * directions.length];
+        int count = 0;
+        for (int door : doors) {
+            for (int d = 0; d < directions.length; d++) {
+                int[] pusherButtons = new int[reach];
+                int[][] linePushes = new int[reach][];
+                int length = 0;
+                for (int next = geometry.neighbor(door, d); length < reach && next >= 0 && !blocked[next];
+                     next = geometry.neighbor(next, d)) {
+                    int held = Math.min(wormButtons, Math.min(buttons.length, longest));
+                    if (sizes != null) {
+                        int most = 0;
+                        for (int mask = 1; mask < sizes.length; mask++) {
+                            if (sizes[mask][next] <= longest) most = Math.max(most, Integer.bitCount(mask));
+                        }
+                        held = Math.min(held, most);
+                    }
+                    pusherButtons[length] = buttons.length - held;
+                    linePushes[length++] = pushCosts(next);
+                }
+                if (length == 0) continue;
+                Entry entry = new Entry();
+                entry.pusherButtons = Arrays.copyOf(pusherButtons, length);
+                entry.linePushes = Arrays.copyOf(linePushes, length);
+                entries[count++] = entry;
+            }
+        }
+        return Arrays.copyOf(entries, count);
+    }
+
+    /**
+     * @return the farthest the head can be from a door it pushes a line of pushers into
+     */
+    private int entryReach() { return 1 + Math.min(level.pusherFields.length, 1 + level.expandoFields.length); }
+
+    /**
+     * Walks backwards from {@code target}, entering a field costs {@link #moveCosts}.
+     *
+     * @return the cost of the cheapest walk from every field onto {@code target} around {@code blocked} fields, or
+     * {@link #infinity}
+     */
+    private int[] walkCosts(int target, boolean[] blocked) {
+        int[] costs = new int[level.fieldCount];
+        Arrays.fill(costs, infinity);
+        int[] current = new int[level.fieldCount];
+        int[] next = new int[level.fieldCount];
+        int size = 0;
+        costs[target] = 0;
+        current[size++] = target;
+        for (int cost = 0; size > 0; cost++) {
+            int nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                int to = current[i];
+                if (costs[to] != cost) continue;
+                for (int d = 0; d < directions.length; d++) {
+                    int from = geometry.neighbor(to, d);
+                    if (from < 0 || blocked[from] || costs[from] <= cost + moveCosts[to]) continue;
+                    costs[from] = cost + moveCosts[to];
+                    if (moveCosts[to] == 0) {
+                        current[size++] = from;
+                    } else {
+                        next[nextSize++] = from;
+                    }
+                }
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            size = nextSize;
+        }
+        return costs;
+    }
+
+    /**
+     * Walks backwards from {@code button} like {@link LevelAnalysis}: a pusher gets from t - d to t if the field behind
+     * it is no wall.
+     *
+     * @return the number of pushes to get a pusher from every field onto {@code button} or {@link #infinity}
+     */
+    private int[] pushCosts(int button) {
+        int[] costs = new int[level.fieldCount];
+        Arrays.fill(costs, infinity);
+        int[] queue = new int[level.fieldCount];
+        int head = 0;
+        int tail = 0;
+        costs[button] = 0;
+        queue[tail++] = button;
+        while (head < tail) {
+            int to = queue[head++];
+            for (int d = 0; d < directions.length; d++) {
+                int from = geometry.neighbor(to, d);
+                if (from < 0 || walls[from] || costs[from] < infinity) continue;
+                int behind = geometry.neighbor(from, d);
+                if (behind < 0 || walls[behind]) continue;
+                costs[from] = costs[to] + 1;
+                queue[tail++] = from;
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Finds smallest Steiner trees over the fields with the algorithm of Dreyfus and Wagner.
+     *
+     * @return at {@code [mask][f]} the fewest fields of a connected set around {@code blocked} fields that holds
+     * {@code f} and a field of every group in {@code mask}
+     */
+    private int[][] connectedSetSizes(int[][] groups, boolean[] blocked) {
+        int fieldCount = level.fieldCount;
+        int[][] sizes = new int[1 << groups.length][];
+        for (int g = 0; g < groups.length; g++) {
+            int[] size = new int[fieldCount];
+            Arrays.fill(size, infinity);
+            for (int fieldIndex : groups[g]) size[fieldIndex] = 1;
+            spread(size, blocked);
+            sizes[1 << g] = size;
+        }
+        for (int mask = 1; mask < sizes.length; mask++) {
+            if (Integer.bitCount(mask) < 2) continue;
+            int[] size = new int[fieldCount];
+            Arrays.fill(size, infinity);
+            // Join two trees that share a field, every split is tried once as the low bit stays in the first part
+            int low = mask & -mask;
+            for (int part = (mask - 1) & mask; part > 0; part = (part - 1) & mask) {
+                if ((part & low) == 0) continue;
+                int[] a = sizes[part];
+                int[] b = sizes[mask & ~part];
+                for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+                    size[fieldIndex] = Math.min(size[fieldIndex], a[fieldIndex] + b[fieldIndex] - 1);
+                }
+            }
+            spread(size, blocked);
+            sizes[mask] = size;
+        }
+        return sizes;
+    }
+
+    private static int smallest(int[] sizes) {
+        int fewest = infinity;
+        for (int size : sizes) fewest = Math.min(fewest, size);
+        return fewest;
+    }
+
+    /**
+     * Grows the sets of {@code sizes} by paths to further fields: {@code sizes[f] = min(sizes[g] + distance(g, f))}.
+     * Visits the fields in the order of their size, one bucket per size.
+     */
+    private void spread(int[] sizes, boolean[] blocked) {
+        int fieldCount = level.fieldCount;
+        int[] order = new int[fieldCount];
+        int count = 0;
+        for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+            if (sizes[fieldIndex] < infinity && !blocked[fieldIndex]) order[count++] = fieldIndex;
+        }
+        // Sorted fields with a size of their own and a queue of fields reached from them, which stays sorted as well
+        sortBySize(order, count, sizes);
+        int[] queue = new int[fieldCount];
+        boolean[] done = new boolean[fieldCount];
+        int next = 0;
+        int head = 0;
+        int tail = 0;
+        while (next < count || head < tail) {
+            int fieldIndex;
+            if (head == tail || next < count && sizes[order[next]] <= sizes[queue[head]]) {
+                fieldIndex = order[next++];
+            } else {
+                fieldIndex = queue[head++];
+            }
+            if (done[fieldIndex]) continue;
+            done[fieldIndex] = true;
+            for (int d = 0; d < directions.length; d++) {
+                int neighbor = geometry.neighbor(fieldIndex, d);
+                if (neighbor < 0 || blocked[neighbor] || done[neighbor]) continue;
+                if (sizes[fieldIndex] + 1 >= sizes[neighbor]) continue;
+                sizes[neighbor] = sizes[fieldIndex] + 1;
+                queue[tail++] = neighbor;
+            }
+        }
+        for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+            if (blocked[fieldIndex]) sizes[fieldIndex] = infinity;
+        }
+    }
+
+    private static void sort(int[] values, int count) {
+        // Insertion sort, there are only a few buttons
+        for (int i = 1; i < count; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                --j;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void sortBySize(int[] fields, int count, final int[] sizes) {
+        // Insertion sort, the fields with a size of their own are few or already in order
+        for (int i = 1; i < count; i++) {
+            int fieldIndex = fields[i];
+            int j = i - 1;
+            while (j >= 0 && sizes[fields[j]] > sizes[fieldIndex]) {
+                fields[j + 1] = fields[j];
+                --j;
+            }
+            fields[j + 1] = fieldIndex;
+        }
+    }
+
+    private static boolean isAnyOccupied(Engine engine, int[] fields) {
+        for (int fieldIndex : fields) {
+            if (engine.isOccupied(fieldIndex)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rows of bounds that only depend on the pushers and expandos, by the {@link Engine#pieceHash} they were worked
+     * out for, with an open-addressing index like that of {@link StateTable}. Rows are told apart by the hash alone,
+     * which collides too rarely to matter.
+     */
+    private static final class BoundTable {
+        private final int width;
+        private int[] bounds;
+        private int size;
+        /** Holds the hash of each slot's row, and its id + 1 in {@link #ids}, 0 for free slots */
+        private long[] keys = new long[512];
+        private int[] ids = new int[512];
+
+        BoundTable(int width) {
+            this.width = width;
+            bounds = new int[256 * width];
+        }
+
+        int indexOf(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) key & mask; ids[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return ids[slot] - 1;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the id of the new row
+         */
+        int add(long key, int[] row) {
+            if ((size + 1) * width > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            int id = size++;
+            System.arraycopy(row, 0, bounds, id * width, width);
+            if (size * 2 > keys.length) grow();
+            put(key, id);
+            return id;
+        }
+
+        int bound(int id, int index) { return bounds[id * width + index]; }
+
+        private void put(long key, int id) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (ids[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            ids[slot] = id + 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldIds.length * 2];
+            for (int slot = 0; slot < oldIds.length; slot++) {
+                if (oldIds[slot] != 0) put(oldKeys[slot], oldIds[slot] - 1);
+            }
+        }
+    }
+}
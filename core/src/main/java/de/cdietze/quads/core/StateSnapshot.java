@@ -0,0 +1,245 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, bit-packed copy of the mutable part of a board: the player's head, the tail in order, the pusher
+ * positions, the remaining expandos and which doors are occupied. Everything else is part of the {@link Level}, which
+ * is not copied; the same level is needed to read a snapshot back.
+ * <p>
+ * With {@code b} bits per field index the layout is: head ({@code b}), tail size ({@code b}), tail segments newest
+ * first ({@code b} each), pusher fields in ascending order ({@code b} each), one bit per expando of
+ * {@link Level#expandoEntity} and one bit per door in {@link Level#doorLinks} order. Pushers are interchangeable, so
+ * two boards with the same pushers on the same fields give equal snapshots. A 7x7 level fits in two or three longs.
+ * <p>
+ * The {@link Zobrist} hash is taken over from the board, which keeps it up to date on every move.
+ */
+public final class StateSnapshot {
+
+    private final long[] words;
+    private final long hash;
+
+    private StateSnapshot(long[] words, long hash) {
+        this.words = words;
+        this.hash = hash;
+    }
+
+    public static StateSnapshot of(Engine engine) {
+        long[] words = new long[wordCount(engine.level, engine.tail().size())];
+        pack(engine, words, 0);
+        return new StateSnapshot(words, engine.hash());
+    }
+
+    /**
+     * Packs the engine's state into {@code words} starting at {@code offset}, which must hold at least
+     * {@link #wordCount} words and be zeroed. This is {@link #of(Engine)} without the allocations.
+     */
+    public static void pack(Engine engine, long[] words, int offset) {
+        Level level = engine.level;
+        WormTail tail = engine.tail();
+        Packer packer = new Packer(level, words, offset);
+        packer.putField(engine.head());
+        packer.putField(tail.size());
+        for (int i = 0; i < tail.size(); i++) packer.putField(tail.get(i));
+        // Pushers are interchangeable, write them ordered by field
+        for (int fieldIndex = 0, found = 0; found < engine.pusherCount(); fieldIndex++) {
+            if (engine.pusherAt(fieldIndex) < 0) continue;
+            packer.putField(fieldIndex);
+            ++found;
+        }
+        for (int fieldIndex : level.expandoFields) packer.putBit(engine.expandoAt(fieldIndex) >= 0);
+        for (int i = 0; i < level.doorLinks.size(); i++) {
+            for (int fieldIndex : level.doorLinks.get(i).doorFields) packer.putBit(engine.isOccupied(fieldIndex));
+        }
+    }
+
+    /**
+     * @return the number of words a state of {@code level} with the given tail size packs into
+     */
+    public static int wordCount(Level level, int tailSize) {
+        int bits = (2 + tailSize + level.pushEntity.size()) * bitsPerField(level)
+                + level.expandoEntity.size() + doorCount(level.doorLinks);
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    /**
+     * @return the number of words of the longest state of {@code level}, whose tail has grown by every expando
+     */
+    public static int maxWordCount(Level level) { return wordCount(level, level.expandoEntity.size()); }
+
+    public static StateSnapshot of(BoardState state) {
+        Level level = state.level;
+        WormTail tail = state.playerEntity.tail;
+        long[] words = new long[wordCount(level, tail.size())];
+        Packer packer = new Packer(level, words, 0);
+        packer.putField(state.playerEntity.fieldIndex.get());
+        packer.putField(tail.size());
+        for (int i = 0; i < tail.size(); i++) packer.putField(tail.get(i));
+        for (int fieldIndex = 0; fieldIndex < level.fieldCount; fieldIndex++) {
+            BoardState.Entity movable = state.occupancy.movableAt(fieldIndex);
+            if (movable != null && movable.type == BoardState.Entity.Type.PUSHER) packer.putField(fieldIndex);
+        }
+        for (int fieldIndex : level.expandoEntity) {
+            BoardState.Entity movable = state.occupancy.movableAt(fieldIndex);
+            packer.putBit(movable != null && movable.type == BoardState.Entity.Type.EXPANDO);
+        }
+        for (Level.DoorLink doorLink : level.doorLinks) {
+            for (int fieldIndex : doorLink.doors) {
+                packer.putBit(((BoardState.DoorEntity) state.occupancy.fixedAt(fieldIndex)).isOccupied());
+            }
+        }
+        return new StateSnapshot(words, state.hash());
+    }
+
+    public long hash() { return hash; }
+
+    public int wordCount() { return words.length; }
+
+    public long word(int index) { return words[index]; }
+
+    /**
+     * @return the words of this snapshot, which must not be modified
+     */
+    long[] words() { return words; }
+
+    public int head(Level level) { return head(level, words, 0); }
+
+    public int tailSize(Level level) { return tailSize(level, words, 0); }
+
+    /**
+     * @return the tail segment at {@code index}, 0 being the newest one
+     */
+    public int tailSegment(Level level, int index) { return tailSegment(level, words, 0, index); }
+
+    /**
+     * @return the field of the {@code index}th pusher, ordered by field
+     */
+    public int pusherField(Level level, int index) { return pusherField(level, words, 0, index); }
+
+    /**
+     * @return whether the expando with the given index in {@link Level#expandoEntity} is still there
+     */
+    public boolean hasExpando(Level level, int expandoIndex) { return hasExpando(level, words, 0, expandoIndex); }
+
+    /**
+     * @return whether the door with the given index, counting through the doors of all {@link Level#doorLinks}, is
+     * occupied
+     */
+    public boolean isDoorOccupied(Level level, int doorIndex) {
+        return bits(words, 0, expandoOffset(level, words, 0) + level.expandoEntity.size() + doorIndex, 1) != 0;
+    }
+
+    // The same accessors for a state packed into words at offset
+
+    public static int head(Level level, long[] words, int offset) {
+        return (int) bits(words, offset, 0, bitsPerField(level));
+    }
+
+    public static int tailSize(Level level, long[] words, int offset) {
+        return (int) bits(words, offset, bitsPerField(level), bitsPerField(level));
+    }
+
+    public static int tailSegment(Level level, long[] words, int offset, int index) {
+        int b = bitsPerField(level);
+        return (int) bits(words, offset, (2 + index) * b, b);
+    }
+
+    public static int pusherField(Level level, long[] words, int offset, int index) {
+        int b = bitsPerField(level);
+        return (int) bits(words, offset, (2 + tailSize(level, words, offset) + index) * b, b);
+    }
+
+    public static boolean hasExpando(Level level, long[] words, int offset, int expandoIndex) {
+        return bits(words, offset, expandoOffset(level, words, offset) + expandoIndex, 1) != 0;
+    }
+
+    private static int expandoOffset(Level level, long[] words, int offset) {
+        return (2 + tailSize(level, words, offset) + level.pushEntity.size()) * bitsPerField(level);
+    }
+
+    private static long bits(long[] words, int wordOffset, int bitOffset, int count) {
+        int word = wordOffset + (bitOffset >>> 6);
+        int shift = bitOffset & 63;
+        long value = words[word] >>> shift;
+        if (shift + count > 64) value |= words[word + 1] << (64 - shift);
+        return value & ((1L << count) - 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StateSnapshot)) return false;
+        StateSnapshot other = (StateSnapshot) o;
+        return hash == other.hash && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() { return (int) (hash ^ (hash >>> 32)); }
+
+    static int bitsPerField(Level level) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(level.fieldCount - 1));
+    }
+
+    private static int doorCount(List<Level.DoorLink> doorLinks) {
+        int count = 0;
+        for (Level.DoorLink doorLink : doorLinks) count += doorLink.doors.size();
+        return count;
+    }
+
+    /**
+     * Reads a packed state front to back, the way {@link Packer} wrote it.
+     */
+    static final class Unpacker {
+        final long[] words;
+        final int wordOffset;
+        final int bitsPerField;
+        /** The next bit to read, counted from {@link #wordOffset} so it can not overflow in a large table */
+        int offset;
+
+        Unpacker(Level level, long[] words, int wordOffset) {
+            this.words = words;
+            this.wordOffset = wordOffset;
+            this.bitsPerField = bitsPerField(level);
+        }
+
+        int nextField() {
+            int field = (int) bits(words, wordOffset, offset, bitsPerField);
+            offset += bitsPerField;
+            return field;
+        }
+
+        void skipFields(int count) { offset += count * bitsPerField; }
+
+        boolean nextBit() {
+            boolean bit = bits(words, wordOffset, offset, 1) != 0;
+            ++offset;
+            return bit;
+        }
+    }
+
+    private static final class Packer {
+        final long[] words;
+        final int wordOffset;
+        final int bitsPerField;
+        int offset;
+
+        Packer(Level level, long[] words, int wordOffset) {
+            this.words = words;
+            this.wordOffset = wordOffset;
+            this.bitsPerField = bitsPerField(level);
+        }
+
+        void putField(int fieldIndex) { put(fieldIndex, bitsPerField); }
+
+        void putBit(boolean bit) { put(bit ? 1 : 0, 1); }
+
+        private void put(long value, int count) {
+            int word = wordOffset + (offset >>> 6);
+            int shift = offset & 63;
+            words[word] |= value << shift;
+            if (shift + count > 64) words[word + 1] |= value >>> (64 - shift);
+            offset += count;
+        }
+    }
+}
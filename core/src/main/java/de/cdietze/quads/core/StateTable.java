@@ -0,0 +1,150 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+
+/**
+ * Append-only table of packed board states, see {@link StateSnapshot#pack}.
+ * <p>
+ * States get consecutive ids in the order they are added and remember the id of the state they were reached from plus
+ * the move that got there, so a path can be read back. All states live in one long array with an offset per id, and an
+ * open-addressing index over the states' {@link Zobrist} hashes finds duplicates without boxing anything. Each slot
+ * of the index keeps the upper half of the hash next to the id, so most lookups of new states touch nothing else.
+ */
+public final class StateTable {
+
+    private long[] words;
+    private int wordsUsed;
+    private int[] offsets;
+    private long[] hashes;
+    private int[] parents;
+    private byte[] moves;
+    private int size;
+    /** Holds the upper half of the hash and id + 1 of the state hashed to each slot, 0 for free slots */
+    private long[] index;
+
+    public StateTable() {
+        words = new long[1024];
+        offsets = new int[257];
+        hashes = new long[256];
+        parents = new int[256];
+        moves = new byte[256];
+        index = new long[512];
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Adds a state unless it is already in the table.
+     *
+     * @param parent the id of the state this one was reached from, -1 for a start state
+     * @param move   the move that led here from {@code parent}, e.g. a {@link Direction} ordinal
+     * @return the new state's id or -1 if the state was already known
+     */
+    public int add(long[] state, int offset, int wordCount, long hash, int parent, int move) {
+        int mask = index.length - 1;
+        int slot = (int) hash & mask;
+        for (long entry = index[slot]; entry != 0; entry = index[slot]) {
+            if (equals(entry, state, offset, wordCount, hash)) return -1;
+            slot = (slot + 1) & mask;
+        }
+        if (size == parents.length) growStates();
+        if (wordsUsed + wordCount > words.length) words = Arrays.copyOf(words, Math.max(words.length * 2, wordsUsed + wordCount));
+        int id = size++;
+        System.arraycopy(state, offset, words, wordsUsed, wordCount);
+        wordsUsed += wordCount;
+        offsets[id + 1] = wordsUsed;
+        hashes[id] = hash;
+        parents[id] = parent;
+        moves[id] = (byte) move;
+        index[slot] = entry(hash, id);
+        if (size * 2 > index.length) growIndex();
+        return id;
+    }
+
+    /**
+     * @return the id of the state or -1 if it is not in the table
+     */
+    public int indexOf(long[] state, int offset, int wordCount, long hash) {
+        int mask = index.length - 1;
+        int slot = (int) hash & mask;
+        for (long entry = index[slot]; entry != 0; entry = index[slot]) {
+            if (equals(entry, state, offset, wordCount, hash)) return (int) entry - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the state with the given id reached from {@code parent} by {@code move}, for searches that find a shorter
+     * path to a known state.
+     */
+    public void reparent(int id, int parent, int move) {
+        parents[id] = parent;
+        moves[id] = (byte) move;
+    }
+
+    public int parent(int id) { return parents[id]; }
+
+    public int move(int id) { return moves[id]; }
+
+    public long hash(int id) { return hashes[id]; }
+
+    /**
+     * Puts {@code engine} into the state with the given id.
+     */
+    public void restore(Engine engine, int id) { engine.restore(words, offsets[id]); }
+
+    /**
+     * @return the moves leading from the start state to the state with the given id
+     */
+    public int[] path(int id) {
+        int length = 0;
+        for (int i = id; parents[i] >= 0; i = parents[i]) ++length;
+        int[] path = new int[length];
+        for (int i = id; parents[i] >= 0; i = parents[i]) path[--length] = moves[i];
+        return path;
+    }
+
+    /**
+     * @return the number of bytes currently allocated by this table
+     */
+    public long allocatedBytes() {
+        return 8L * words.length + 4L * offsets.length + 8L * hashes.length + 4L * parents.length + moves.length
+                + 8L * index.length;
+    }
+
+    private static long entry(long hash, int id) { return hash & 0xffffffff00000000L | id + 1; }
+
+    /**
+     * @param entry an entry of {@link #index}
+     */
+    private boolean equals(long entry, long[] state, int offset, int wordCount, long hash) {
+        if ((entry ^ hash) >>> 32 != 0) return false;
+        int id = (int) entry - 1;
+        if (offsets[id + 1] - offsets[id] != wordCount) return false;
+        for (int i = 0, o = offsets[id]; i < wordCount; i++) {
+            if (words[o + i] != state[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private void growStates() {
+        int capacity = parents.length * 2;
+        offsets = Arrays.copyOf(offsets, capacity + 1);
+        hashes = Arrays.copyOf(hashes, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+    }
+
+    private void growIndex() {
+        long[] grown = new long[index.length * 2];
+        int mask = grown.length - 1;
+        for (long entry : index) {
+            if (entry == 0) continue;
+            int slot = (int) hashes[(int) entry - 1] & mask;
+            while (grown[slot] != 0) slot = (slot + 1) & mask;
+            grown[slot] = entry;
+        }
+        index = grown;
+    }
+}
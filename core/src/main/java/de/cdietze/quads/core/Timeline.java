@@ -0,0 +1,180 @@
+package de.cdietze.quads.core;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The moves of a play session, for jumping to any move number.
+ * <p>
+ * Every move is kept as a byte, and every {@link #interval()} moves a {@link StateSnapshot} of the board is kept as a
+ * keyframe. {@link #seek} restores the keyframe at or before the wanted move and replays at most
+ * {@code interval - 1} moves from there, however long the session is. When the keyframes outgrow the memory budget
+ * the interval is doubled and every other keyframe is dropped, so long sessions trade a few more replayed moves for
+ * memory.
+ * <p>
+ * Like {@link BoardState#undo}, {@link #back} and {@link #forward} step over the moves without forgetting them; a new
+ * move recorded before the last one drops the moves after it.
+ */
+public final class Timeline {
+
+    private static final Direction[] directions = Direction.values();
+
+    public static final int defaultInterval = 32;
+    /** Bytes, about 30,000 keyframes of a 7x7 level */
+    public static final int defaultMemoryBudget = 1 << 20;
+
+    public final Level level;
+    private final int memoryBudget;
+    private final Engine engine;
+    private byte[] moves = new byte[256];
+    private int size;
+    private int position;
+    /** The state after {@code i * interval} moves at index {@code i}, the start state first */
+    private StateSnapshot[] keyframes = new StateSnapshot[16];
+    private int keyframeCount;
+    private int keyframeBytes;
+    private int interval;
+
+    public Timeline(Level level) { this(level, defaultInterval, defaultMemoryBudget); }
+
+    /**
+     * @param interval the number of moves between keyframes to start with
+     * @param memoryBudget roughly how many bytes the keyframes may take before the interval is doubled
+     */
+    public Timeline(Level level, int interval, int memoryBudget) {
+        checkArgument(interval > 0, "interval must be positive: %s", interval);
+        this.level = level;
+        this.interval = interval;
+        this.memoryBudget = memoryBudget;
+        engine = new Engine(level);
+        addKeyframe(engine.snapshot());
+    }
+
+    /**
+     * @return the number of recorded moves
+     */
+    public int size() { return size; }
+
+    /**
+     * @return the number of moves that lead to the current state
+     */
+    public int position() { return position; }
+
+    /**
+     * @return the number of moves between keyframes, which grows as the keyframes fill the memory budget
+     */
+    public int interval() { return interval; }
+
+    /**
+     * @return roughly how many bytes the keyframes take
+     */
+    public int keyframeBytes() { return keyframeBytes; }
+
+    /**
+     * @return the move that leads from the state after {@code index} moves to the next state
+     */
+    public Direction move(int index) {
+        checkElementIndex(index, size);
+        return directions[moves[index]];
+    }
+
+    /**
+     * Records a move at the current position, dropping the moves after it.
+     *
+     * @param after the board the move was made on, in the state after the move
+     */
+    public void record(Direction dir, BoardState after) {
+        if (append(dir)) addKeyframe(after.snapshot());
+    }
+
+    /**
+     * Like {@link #record(Direction, BoardState)} for a move made on an engine.
+     */
+    public void record(Direction dir, Engine after) {
+        if (append(dir)) addKeyframe(after.snapshot());
+    }
+
+    /**
+     * Steps one move back, after the move was taken back on the board.
+     */
+    public void back() {
+        checkState(position > 0, "There is no move before the first one");
+        --position;
+    }
+
+    /**
+     * Steps one move forward, after the move was made again on the board.
+     */
+    public void forward() {
+        checkState(position < size, "There is no move after the last one");
+        ++position;
+    }
+
+    /**
+     * Moves the position to {@code move}.
+     *
+     * @return the state after {@code move} moves, to restore a board or engine to
+     */
+    public StateSnapshot seek(int move) {
+        checkPositionIndex(move, size);
+        int keyframe = move / interval;
+        engine.restore(keyframes[keyframe]);
+        for (int index = keyframe * interval; index < move; index++) {
+            checkState(engine.tryMove(directions[moves[index]]), "Move %s cannot be replayed", index);
+        }
+        position = move;
+        return engine.snapshot();
+    }
+
+    /**
+     * @return whether the new position is a keyframe position
+     */
+    private boolean append(Direction dir) {
+        size = position;
+        int keptKeyframes = position / interval + 1;
+        for (int i = keptKeyframes; i < keyframeCount; i++) {
+            keyframeBytes -= bytes(keyframes[i]);
+            keyframes[i] = null;
+        }
+        keyframeCount = Math.min(keyframeCount, keptKeyframes);
+        if (size == moves.length) moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[size++] = (byte) dir.ordinal();
+        ++position;
+        return position % interval == 0;
+    }
+
+    private void addKeyframe(StateSnapshot snapshot) {
+        if (keyframeCount == keyframes.length) keyframes = Arrays.copyOf(keyframes, keyframes.length * 2);
+        keyframes[keyframeCount++] = snapshot;
+        keyframeBytes += bytes(snapshot);
+        while (keyframeBytes > memoryBudget && keyframeCount > 1) {
+            thinKeyframes();
+        }
+    }
+
+    /**
+     * Doubles the interval, keeping the keyframes that are still on it.
+     */
+    private void thinKeyframes() {
+        int kept = 0;
+        for (int i = 0; i < keyframeCount; i++) {
+            if (i % 2 == 0) {
+                keyframes[kept++] = keyframes[i];
+            } else {
+                keyframeBytes -= bytes(keyframes[i]);
+            }
+        }
+        Arrays.fill(keyframes, kept, keyframeCount, null);
+        keyframeCount = kept;
+        interval *= 2;
+    }
+
+    /**
+     * @return the approximate size of a snapshot, its words plus the object and array headers
+     */
+    private static int bytes(StateSnapshot snapshot) { return 32 + 8 * snapshot.wordCount(); }
+}
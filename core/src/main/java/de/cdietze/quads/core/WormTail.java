@@ -0,0 +1,228 @@
+package de.cdietze.quads.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+/**
+ * The field indexes that make up the worm's tail, ordered by age: index 0 is the newest segment, the last index is the
+ * next one to be removed.
+ * <p>
+ * Backed by an int ring buffer plus a BitSet for membership, so adding a new segment, removing the oldest one and
+ * {@link #contains} are O(1) and nothing is boxed. The tail's {@link Zobrist} hash is kept up to date along the way.
+ * A {@link #copy()} shares this storage until one of the two tails is modified.
+ */
+public final class WormTail {
+
+    public interface Listener {
+        void onAdd(int index, int fieldIndex);
+        void onRemove(int index, int fieldIndex);
+    }
+
+    private int[] ring;
+    /** Position of the newest segment in {@link #ring} */
+    private int first;
+    private int size;
+    private BitSet members;
+    private long hash;
+    /** Whether {@link #ring} and {@link #members} may be shared with a copy and must be copied before a change */
+    private boolean shared;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public WormTail() {
+        ring = new int[8];
+        members = new BitSet();
+    }
+
+    private WormTail(WormTail other) {
+        ring = other.ring;
+        first = other.first;
+        size = other.size;
+        members = other.members;
+        hash = other.hash;
+        shared = true;
+    }
+
+    /**
+     * @return a tail with the same segments and no listeners, sharing the storage with this one until either of them
+     * is modified
+     */
+    public WormTail copy() {
+        shared = true;
+        return new WormTail(this);
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean contains(int fieldIndex) { return fieldIndex >= 0 && members.get(fieldIndex); }
+
+    /**
+     * @return the Zobrist hash of the segments and their order
+     */
+    public long hash() { return hash; }
+
+    /**
+     * @return the field index of the segment at {@code index}, 0 being the newest one
+     */
+    public int get(int index) {
+        checkElementIndex(index, size);
+        return ring[(first + index) & (ring.length - 1)];
+    }
+
+    /**
+     * @return the oldest segment, i.e. the next one to be removed
+     */
+    public int last() { return get(size - 1); }
+
+    /**
+     * Adds a new segment at the front.
+     */
+    public void addFirst(int fieldIndex) {
+        checkNotMember(fieldIndex);
+        unshare();
+        if (size == ring.length) grow();
+        if (size > 0) hash ^= Zobrist.tailFirst(ring[first]) ^ Zobrist.tailLink(fieldIndex, ring[first]);
+        hash ^= Zobrist.tailFirst(fieldIndex);
+        first = (first - 1) & (ring.length - 1);
+        ring[first] = fieldIndex;
+        ++size;
+        members.set(fieldIndex);
+        for (int i = 0, n = listeners.size(); i < n; i++) listeners.get(i).onAdd(0, fieldIndex);
+    }
+
+    /**
+     * Inserts a segment at {@code index}, moving the segments from there on one step older. This takes back a
+     * {@link #remove} or, at the end, a {@link #removeLast}.
+     */
+    public void add(int index, int fieldIndex) {
+        checkPositionIndex(index, size);
+        checkNotMember(fieldIndex);
+        unshare();
+        if (size == ring.length) grow();
+        linkHash(index, fieldIndex);
+        int mask = ring.length - 1;
+        if (index < size / 2) {
+            first = (first - 1) & mask;
+            for (int i = 0; i < index; i++) ring[(first + i) & mask] = ring[(first + i + 1) & mask];
+        } else {
+            for (int i = size; i > index; --i) ring[(first + i) & mask] = ring[(first + i - 1) & mask];
+        }
+        ring[(first + index) & mask] = fieldIndex;
+        ++size;
+        members.set(fieldIndex);
+        for (int i = 0, n = listeners.size(); i < n; i++) listeners.get(i).onAdd(index, fieldIndex);
+    }
+
+    /**
+     * Removes the oldest segment.
+     *
+     * @return its field index
+     */
+    public int removeLast() {
+        int index = size - 1;
+        int fieldIndex = get(index);
+        unshare();
+        hash ^= index == 0 ? Zobrist.tailFirst(fieldIndex) : Zobrist.tailLink(get(index - 1), fieldIndex);
+        --size;
+        members.clear(fieldIndex);
+        for (int i = 0, n = listeners.size(); i < n; i++) listeners.get(i).onRemove(index, fieldIndex);
+        return fieldIndex;
+    }
+
+    /**
+     * Removes the segment on {@code fieldIndex} if there is one, closing the gap from whichever end is nearer.
+     *
+     * @return the index the segment had or -1
+     */
+    public int remove(int fieldIndex) {
+        if (!contains(fieldIndex)) return -1;
+        unshare();
+        int mask = ring.length - 1;
+        int index = 0;
+        while (ring[(first + index) & mask] != fieldIndex) ++index;
+        unlinkHash(index, fieldIndex);
+        if (index < size / 2) {
+            for (int i = index; i > 0; --i) ring[(first + i) & mask] = ring[(first + i - 1) & mask];
+            first = (first + 1) & mask;
+        } else {
+            for (int i = index; i < size - 1; ++i) ring[(first + i) & mask] = ring[(first + i + 1) & mask];
+        }
+        --size;
+        members.clear(fieldIndex);
+        for (int i = 0, n = listeners.size(); i < n; i++) listeners.get(i).onRemove(index, fieldIndex);
+        return index;
+    }
+
+    /**
+     * Adds {@code listener} and notifies it of all current segments, oldest first.
+     */
+    public void connectNotify(Listener listener) {
+        listeners.add(listener);
+        for (int index = size - 1; index >= 0; --index) listener.onAdd(0, get(index));
+    }
+
+    public void disconnect(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void linkHash(int index, int fieldIndex) {
+        boolean hasNewer = index > 0;
+        boolean hasOlder = index < size;
+        int newer = hasNewer ? get(index - 1) : -1;
+        int older = hasOlder ? get(index) : -1;
+        hash ^= hasNewer ? Zobrist.tailLink(newer, fieldIndex) : Zobrist.tailFirst(fieldIndex);
+        if (hasOlder) {
+            // The segment at index moves down behind the inserted one
+            hash ^= Zobrist.tailLink(fieldIndex, older) ^ (hasNewer ? Zobrist.tailLink(newer, older) : Zobrist.tailFirst(older));
+        }
+    }
+
+    private void unlinkHash(int index, int fieldIndex) {
+        boolean hasNewer = index > 0;
+        boolean hasOlder = index < size - 1;
+        int newer = hasNewer ? get(index - 1) : -1;
+        int older = hasOlder ? get(index + 1) : -1;
+        hash ^= hasNewer ? Zobrist.tailLink(newer, fieldIndex) : Zobrist.tailFirst(fieldIndex);
+        if (hasOlder) {
+            // The older neighbor moves up to replace the removed segment
+            hash ^= Zobrist.tailLink(fieldIndex, older) ^ (hasNewer ? Zobrist.tailLink(newer, older) : Zobrist.tailFirst(older));
+        }
+    }
+
+    private void checkNotMember(int fieldIndex) {
+        // Not checkState, whose varargs box the field on every move of a search
+        if (contains(fieldIndex)) {
+            throw new IllegalStateException("Field " + fieldIndex + " is already part of the tail");
+        }
+    }
+
+    private void unshare() {
+        if (!shared) return;
+        ring = Arrays.copyOf(ring, ring.length);
+        members = (BitSet) members.clone();
+        shared = false;
+    }
+
+    private void grow() {
+        int[] grown = new int[ring.length * 2];
+        for (int i = 0; i < size; i++) grown[i] = ring[(first + i) & (ring.length - 1)];
+        ring = grown;
+        first = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(get(i));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,41 @@
+package de.cdietze.quads.core;
+
+/**
+ * Zobrist keys for board states.
+ * <p>
+ * A state's hash is the XOR of the keys of its parts, so a move updates it by XOR-ing out the keys of what changed and
+ * XOR-ing in the new ones. The keys are derived from the field index by a 64 bit mixing function instead of being
+ * looked up in random tables, so they cost no memory and are the same for every level. The tail is keyed by its newest
+ * segment plus every pair of consecutive segments, which pins down its order.
+ */
+public final class Zobrist {
+    private Zobrist() {}
+
+    private static final long HEAD = 0x1000000000L;
+    private static final long TAIL_FIRST = 0x2000000000L;
+    private static final long PUSHER = 0x3000000000L;
+    private static final long EXPANDO = 0x4000000000L;
+    private static final long TAIL_LINK = 0x5000000000000000L;
+
+    public static long head(int fieldIndex) { return mix(HEAD + fieldIndex); }
+
+    public static long tailFirst(int fieldIndex) { return mix(TAIL_FIRST + fieldIndex); }
+
+    /**
+     * Key for segment {@code newer} directly followed by the older segment {@code older}.
+     */
+    public static long tailLink(int newer, int older) { return mix(TAIL_LINK ^ ((long) newer << 30) ^ older); }
+
+    public static long pusher(int fieldIndex) { return mix(PUSHER + fieldIndex); }
+
+    public static long expando(int fieldIndex) { return mix(EXPANDO + fieldIndex); }
+
+    /**
+     * The SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,112 @@
+package de.cdietze.quads.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays the same random walks on {@link Engine} and {@link BitboardEngine} and checks that they agree after every
+ * move.
+ */
+public class BitboardEngineTest {
+
+    private static final int walksPerLevel = 20;
+    private static final int movesPerWalk = 300;
+
+    @Test
+    public void builtinLevels() {
+        for (int i = 0; i < Levels.levels.size(); i++) compareWalks(Levels.levels.get(i), i);
+    }
+
+    /**
+     * Boards of more than one word, so that shifts carry bits from word to word in both directions.
+     */
+    @Test
+    public void multiWordBoards() {
+        compareWalks(randomLevel(new Random(1), 150, 3), 1);
+        compareWalks(randomLevel(new Random(2), 70, 12), 2);
+        compareWalks(randomLevel(new Random(3), 9, 40), 3);
+    }
+
+    private static void compareWalks(Level level, long seed) {
+        Random random = new Random(seed);
+        Engine engine = new Engine(level);
+        BitboardEngine bitboard = new BitboardEngine(level);
+        BitSet reachable = new BitSet();
+        for (int walk = 0; walk < walksPerLevel; walk++) {
+            engine.reset();
+            bitboard.reset();
+            for (int move = 0; move < movesPerWalk; move++) {
+                String where = level.title + ", walk " + walk + ", move " + move;
+                assertSameState(where, engine, bitboard);
+                assertEquals(where, reachableFields(engine), bitboard.reachableFields(reachable));
+                if (engine.hasWon()) break;
+                Direction dir = Direction.values()[random.nextInt(4)];
+                assertEquals(where + ", " + dir, engine.tryMove(dir), bitboard.tryMove(dir));
+            }
+        }
+    }
+
+    private static void assertSameState(String where, Engine engine, BitboardEngine bitboard) {
+        assertEquals(where, engine.hash(), bitboard.hash());
+        assertEquals(where, engine.head(), bitboard.head());
+        assertEquals(where, engine.expandosLeft(), bitboard.expandosLeft());
+        assertEquals(where, engine.hasWon(), bitboard.hasWon());
+        for (Direction dir : Direction.values()) {
+            assertEquals(where + ", " + dir, engine.canMove(dir), bitboard.canMove(dir));
+        }
+    }
+
+    /**
+     * @return the fields {@link BitboardEngine#reachableFields} should find, flooded field by field on {@code engine}
+     */
+    private static BitSet reachableFields(Engine engine) {
+        Level level = engine.level;
+        BitSet reached = new BitSet();
+        Deque<Integer> queue = new ArrayDeque<>();
+        reached.set(engine.head());
+        queue.add(engine.head());
+        while (!queue.isEmpty()) {
+            int field = queue.remove();
+            int x = field % level.dim.width;
+            int y = field / level.dim.width;
+            for (Direction dir : Direction.values()) {
+                int nx = x + dir.x();
+                int ny = y + dir.y();
+                if (nx < 0 || ny < 0 || nx >= level.dim.width || ny >= level.dim.height) continue;
+                int next = nx + ny * level.dim.width;
+                if (reached.get(next) || level.cell(next) == Level.WALL || engine.isOccupied(next)
+                        || engine.expandoAt(next) >= 0) continue;
+                if (level.cell(next) == Level.DOOR && !engine.isDoorOpen(next)) continue;
+                reached.set(next);
+                queue.add(next);
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return a level of random walls, pushers, expandos and two door links
+     */
+    private static Level randomLevel(Random random, int width, int height) {
+        char[] fields = new char[width * height];
+        for (int i = 0; i < fields.length; i++) {
+            int roll = random.nextInt(100);
+            fields[i] = roll < 12 ? 'W' : roll < 24 ? 'P' : roll < 30 ? 'X' : roll < 32 ? 'A' : roll < 34 ? 'a'
+                    : roll < 35 ? 'B' : roll < 36 ? 'b' : '.';
+        }
+        fields[width / 2 + height / 2 * width] = 'S';
+        fields[fields.length - 1] = 'G';
+        StringBuilder text = new StringBuilder();
+        for (int y = 0; y < height; y++) {
+            if (y > 0) text.append('\n');
+            text.append(fields, y * width, width);
+        }
+        return new Level.Builder().title(width + "x" + height).read(text.toString()).build();
+    }
+}
@@ -0,0 +1,68 @@
+package de.cdietze.quads.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Takes back every move of random walks through the built-in levels with {@link Engine#undo()} and checks that the
+ * engine is back in the state before the move.
+ */
+public class EngineTest {
+
+    private static final int walksPerLevel = 20;
+    private static final int movesPerWalk = 300;
+
+    @Test
+    public void undo() {
+        for (Level level : Levels.levels) {
+            Random random = new Random(level.title.hashCode());
+            Engine engine = new Engine(level);
+            for (int walk = 0; walk < walksPerLevel; walk++) {
+                engine.reset();
+                for (int move = 0; move < movesPerWalk && !engine.hasWon(); move++) {
+                    String where = level.title + ", walk " + walk + ", move " + move;
+                    StateSnapshot before = engine.snapshot();
+                    boolean[] fixed = fixedStates(engine);
+                    for (Direction dir : Direction.values()) {
+                        if (!engine.tryMove(dir)) continue;
+                        engine.undo();
+                        assertEquals(where + ", " + dir, before, engine.snapshot());
+                        assertEquals(where + ", " + dir, before.hash(), engine.hash());
+                        assertEquals(where + ", " + dir, false, engine.hasWon());
+                        assertArrayEquals(where + ", " + dir, fixed, fixedStates(engine));
+                    }
+                    engine.tryMove(Direction.values()[random.nextInt(4)]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void undoOnlyOnce() {
+        Engine engine = new Engine(Levels.levels.get(0));
+        engine.tryMove(Direction.RIGHT);
+        engine.undo();
+        try {
+            engine.undo();
+            fail("Took back a move twice");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * @return for every field whether it is a button held down or an open door
+     */
+    private static boolean[] fixedStates(Engine engine) {
+        Level level = engine.level;
+        boolean[] states = new boolean[level.fieldCount];
+        for (int fieldIndex = 0; fieldIndex < states.length; fieldIndex++) {
+            states[fieldIndex] = engine.isButtonDown(fieldIndex) || engine.isDoorOpen(fieldIndex);
+        }
+        return states;
+    }
+}
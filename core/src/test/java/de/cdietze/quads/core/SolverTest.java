@@ -0,0 +1,63 @@
+package de.cdietze.quads.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Solves the built-in levels and checks the length of each solution and that it wins when replayed.
+ * <p>
+ * A search over every state confirmed the lengths of the first five levels. The others are the lengths the solver
+ * found when it was written, kept here so a change to its bounds that makes it miss the shortest solution shows up.
+ * The levels that take several seconds are only solved with {@code mvn -Pslow-tests}.
+ */
+public class SolverTest {
+
+    /** The length of the shortest solution of each built-in level */
+    private static final int[] shortest = {6, 8, 12, 36, 29, 44, 46, 55, 129};
+    /** Whether each built-in level takes the solver several seconds */
+    private static final boolean[] slow = {false, false, false, false, false, false, true, false, true};
+
+    @Test
+    public void builtinLevels() {
+        assertEquals(Levels.levels.size(), shortest.length);
+        for (int i = 0; i < shortest.length; i++) {
+            if (!slow[i]) assertShortest(i);
+        }
+    }
+
+    @Test
+    public void slowBuiltinLevels() {
+        assumeTrue(Boolean.getBoolean("quads.slowTests"));
+        for (int i = 0; i < shortest.length; i++) {
+            if (slow[i]) assertShortest(i);
+        }
+    }
+
+    @Test
+    public void unsolvableLevel() {
+        Level level = new Level.Builder().title("walled in").read("S.W.G").build();
+        Solver.Result result = new Solver(level).solve();
+        assertEquals(false, result.isSolved());
+        assertTrue(result.exhausted);
+    }
+
+    private static void assertShortest(int index) {
+        Level level = Levels.levels.get(index);
+        Solver.Result result = new Solver(level).solve();
+        assertTrue(level.title, result.isSolved());
+        assertEquals(level.title, shortest[index], result.solution.length);
+        assertWins(level, result.solution);
+    }
+
+    private static void assertWins(Level level, Direction[] solution) {
+        Engine engine = new Engine(level);
+        for (int i = 0; i < solution.length; i++) {
+            assertEquals(level.title + ", move " + i, false, engine.hasWon());
+            assertTrue(level.title + ", move " + i, engine.tryMove(solution[i]));
+        }
+        assertTrue(level.title, engine.hasWon());
+    }
+}
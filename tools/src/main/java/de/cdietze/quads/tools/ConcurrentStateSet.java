@@ -0,0 +1,145 @@
+package de.cdietze.quads.tools;
+
+import java.util.Arrays;
+
+/**
+ * A {@link StateSet} on the Java heap, split into lock-striped segments by hash.
+ */
+final class ConcurrentStateSet implements StateSet {
+
+    private final Segment[] segments;
+
+    ConcurrentStateSet(int segmentCount) {
+        segments = new Segment[Integer.highestOneBit(Math.max(1, segmentCount))];
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
+    }
+
+    @Override
+    public void offer(long[] state, int offset, int wordCount, long hash, long key) {
+        segments[(int) (hash >>> 40) & (segments.length - 1)].offer(state, offset, wordCount, hash, key);
+    }
+
+    @Override
+    public void drainLayer(SearchLayer next) {
+        int count = 0;
+        for (Segment segment : segments) count += segment.size - segment.layerStart;
+        // Sort by key with the entry's ordinal in the low bits, keys are unique within a layer
+        long[] order = new long[count];
+        long[] entries = new long[count];
+        int ordinal = 0;
+        for (int s = 0; s < segments.length; s++) {
+            Segment segment = segments[s];
+            for (int e = segment.layerStart; e < segment.size; e++, ordinal++) {
+                order[ordinal] = segment.keys[e] << 31 | ordinal;
+                entries[ordinal] = (long) s << 32 | e;
+            }
+        }
+        Arrays.sort(order);
+        for (long sortKey : order) {
+            long entry = entries[(int) (sortKey & Integer.MAX_VALUE)];
+            Segment segment = segments[(int) (entry >>> 32)];
+            int e = (int) entry;
+            long key = segment.keys[e];
+            next.add(segment.words, segment.offsets[e], segment.offsets[e + 1] - segment.offsets[e],
+                    (int) (key >>> 2), (int) (key & 3));
+        }
+        startLayer();
+    }
+
+    @Override
+    public void startLayer() {
+        for (Segment segment : segments) segment.layerStart = segment.size;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    @Override
+    public long allocatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) bytes += segment.allocatedBytes();
+        return bytes;
+    }
+
+    @Override
+    public double loadFactor() {
+        long slots = 0;
+        for (Segment segment : segments) slots += segment.index.length;
+        return (double) size() / slots;
+    }
+
+    /**
+     * @return false, the set grows as long as the heap lasts
+     */
+    @Override
+    public boolean isFull() { return false; }
+
+    private static final class Segment {
+        long[] words = new long[256];
+        int wordsUsed;
+        int[] offsets = new int[65];
+        long[] hashes = new long[64];
+        long[] keys = new long[64];
+        int size;
+        /** The first entry found during the current layer */
+        int layerStart;
+        /** Holds entry + 1 for each used slot */
+        int[] index = new int[128];
+
+        synchronized void offer(long[] state, int offset, int wordCount, long hash, long key) {
+            int mask = index.length - 1;
+            int slot = (int) hash & mask;
+            for (int entry = index[slot]; entry != 0; entry = index[slot]) {
+                int e = entry - 1;
+                if (matches(e, state, offset, wordCount, hash)) {
+                    if (e >= layerStart && key < keys[e]) keys[e] = key;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == hashes.length) {
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+                hashes = Arrays.copyOf(hashes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            if (wordsUsed + wordCount > words.length) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, wordsUsed + wordCount));
+            }
+            System.arraycopy(state, offset, words, wordsUsed, wordCount);
+            wordsUsed += wordCount;
+            hashes[size] = hash;
+            keys[size] = key;
+            offsets[++size] = wordsUsed;
+            index[slot] = size;
+            if (size * 2 > index.length) growIndex();
+        }
+
+        private boolean matches(int e, long[] state, int offset, int wordCount, long hash) {
+            if (hashes[e] != hash || offsets[e + 1] - offsets[e] != wordCount) return false;
+            for (int i = 0, o = offsets[e]; i < wordCount; i++) {
+                if (words[o + i] != state[offset + i]) return false;
+            }
+            return true;
+        }
+
+        private void growIndex() {
+            int[] grown = new int[index.length * 2];
+            int mask = grown.length - 1;
+            for (int entry : index) {
+                if (entry == 0) continue;
+                int slot = (int) hashes[entry - 1] & mask;
+                while (grown[slot] != 0) slot = (slot + 1) & mask;
+                grown[slot] = entry;
+            }
+            index = grown;
+        }
+
+        synchronized long allocatedBytes() {
+            return 8L * words.length + 4L * offsets.length + 16L * hashes.length + 4L * index.length;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package de.cdietze.quads.tools;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Solver;
+import de.cdietze.quads.core.StateSnapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Breadth-first search that keeps its layers on disk, for levels whose states do not fit into memory.
+ * <p>
+ * All files live in one directory. Each layer is a sorted {@link StateRunWriter run} of distinct states and a second
+ * run holds all states visited so far. A layer is expanded while reading it through memory-mapped windows, the
+ * successors are collected in a buffer of {@link #runBytes} and every full buffer is sorted and written as a run of
+ * its own. Merging those runs against the visited run drops the duplicates and writes both the next layer and the
+ * next visited run in one pass. Moves can not be taken back, so a duplicate may be from any earlier layer, which is
+ * why the whole visited run takes part in every merge. Heap usage stays at about one buffer however large the search
+ * gets.
+ * <p>
+ * No parents are stored: once a winning move is found, the path back is found by expanding the earlier layers again
+ * until a state leading to the current one turns up. The solution is a shortest one, though not necessarily the one
+ * {@link Solver} finds.
+ * <p>
+ * A manifest records the last completed layer and is replaced atomically after the layer's files are forced to the
+ * disk. Calling {@link #solve()} again on the same directory, e.g. after the process was killed, continues from there.
+ */
+public final class ExternalSolver {
+
+    private static final Direction[] directions = Direction.values();
+    private static final String manifestName = "manifest.properties";
+
+    public final Level level;
+    public final File directory;
+    /** The number of words every state is padded to */
+    private final int words;
+    private final Engine engine;
+    private long runBytes = 64L << 20;
+
+    private long expanded;
+    private int runCount;
+    private long peakBytes;
+
+    public ExternalSolver(Level level, File directory) {
+        this.level = level;
+        this.directory = directory;
+        this.words = StateSnapshot.maxWordCount(level);
+        this.engine = new Engine(level);
+    }
+
+    /**
+     * Sets the size of the buffer for the successors of a layer, which is about all the heap the search needs.
+     */
+    public ExternalSolver runBytes(long runBytes) {
+        this.runBytes = runBytes;
+        return this;
+    }
+
+    /**
+     * Searches the level, continuing from the last completed layer if the directory holds an earlier search of it.
+     */
+    public Solver.Result solve() throws IOException {
+        long startMillis = System.currentTimeMillis();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+        peakBytes = diskBytes();
+        Properties manifest = readManifest();
+        int depth;
+        long states;
+        if (manifest == null) {
+            depth = 0;
+            states = 1;
+            expanded = 0;
+            long[] start = new long[words];
+            StateSnapshot.pack(engine, start, 0);
+            try (StateRunWriter layer = new StateRunWriter(layerFile(0), words);
+                 StateRunWriter visited = new StateRunWriter(visitedFile(0), words)) {
+                layer.write(start, 0);
+                visited.write(start, 0);
+            }
+            writeManifest(depth, states, null, false);
+        } else {
+            if (!fingerprint(level).equals(manifest.getProperty("fingerprint"))) {
+                throw new IOException(directory + " holds the search of a different level");
+            }
+            depth = Integer.parseInt(manifest.getProperty("depth"));
+            states = Long.parseLong(manifest.getProperty("states"));
+            expanded = Long.parseLong(manifest.getProperty("expanded"));
+            if (manifest.containsKey("solution")) {
+                return result(parseSolution(manifest.getProperty("solution")), false, states, startMillis);
+            }
+            if (Boolean.parseBoolean(manifest.getProperty("exhausted"))) return result(null, true, states, startMillis);
+        }
+        long[] winner = new long[words];
+        while (true) {
+            deleteRuns();
+            int winningMove = expand(depth, winner);
+            if (winningMove >= 0) {
+                Direction[] solution = solution(depth, winner, winningMove);
+                deleteRuns();
+                writeManifest(depth, states, solution, false);
+                return result(solution, false, states, startMillis);
+            }
+            long added = merge(depth);
+            peakBytes = Math.max(peakBytes, diskBytes());
+            states += added;
+            ++depth;
+            writeManifest(depth, states, null, added == 0);
+            deleteRuns();
+            Files.deleteIfExists(visitedFile(depth - 1).toPath());
+            if (added == 0) return result(null, true, states, startMillis);
+        }
+    }
+
+    /**
+     * Expands all states of the layer and writes their successors as sorted runs.
+     *
+     * @return the winning move of the state copied to {@code winner} or -1 if there is none in this layer
+     */
+    private int expand(int depth, long[] winner) throws IOException {
+        int capacity = (int) Math.max(1, Math.min(runBytes / (8L * words), Integer.MAX_VALUE / words));
+        long[] buffer = new long[capacity * words];
+        int count = 0;
+        try (StateRunReader layer = new StateRunReader(layerFile(depth), words)) {
+            while (layer.next()) {
+                long[] state = layer.current();
+                ++expanded;
+                boolean restored = false;
+                for (Direction dir : directions) {
+                    if (!restored) {
+                        engine.restore(state, 0);
+                        restored = true;
+                    }
+                    if (!engine.tryMove(dir)) continue;
+                    restored = false;
+                    if (engine.hasWon()) {
+                        System.arraycopy(state, 0, winner, 0, words);
+                        return dir.ordinal();
+                    }
+                    // A push may have frozen pushers in a way that rules out winning
+                    if (engine.lastPushCount() > 0 && engine.isDeadEnd()) continue;
+                    int offset = count * words;
+                    Arrays.fill(buffer, offset, offset + words, 0L);
+                    StateSnapshot.pack(engine, buffer, offset);
+                    if (++count == capacity) {
+                        writeRun(buffer, count);
+                        count = 0;
+                    }
+                }
+            }
+        }
+        if (count > 0) writeRun(buffer, count);
+        return -1;
+    }
+
+    private void writeRun(long[] buffer, int count) throws IOException {
+        sort(buffer, words, new long[words], 0, count);
+        try (StateRunWriter run = new StateRunWriter(runFile(runCount++), words)) {
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && StateRunWriter.compare(buffer, i * words, buffer, (i - 1) * words, words) == 0) continue;
+                run.write(buffer, i * words);
+            }
+        }
+        peakBytes = Math.max(peakBytes, diskBytes());
+    }
+
+    /**
+     * Merges the runs of the expanded layer against the visited states into the next layer and visited run.
+     *
+     * @return the number of new states
+     */
+    private long merge(int depth) throws IOException {
+        List<StateRunReader> runs = new ArrayList<>();
+        try (StateRunReader visited = new StateRunReader(visitedFile(depth), words);
+             StateRunWriter nextLayer = new StateRunWriter(layerFile(depth + 1), words);
+             StateRunWriter nextVisited = new StateRunWriter(visitedFile(depth + 1), words)) {
+            for (int i = 0; i < runCount; i++) runs.add(new StateRunReader(runFile(i), words));
+            RunMerger candidates = new RunMerger(runs, words);
+            boolean hasVisited = visited.next();
+            long[] last = new long[words];
+            boolean hasLast = false;
+            while (candidates.next()) {
+                long[] candidate = candidates.current();
+                // Several runs may hold the same state
+                if (hasLast && StateRunWriter.compare(candidate, 0, last, 0, words) == 0) continue;
+                System.arraycopy(candidate, 0, last, 0, words);
+                hasLast = true;
+                int order = -1;
+                while (hasVisited && (order = StateRunWriter.compare(visited.current(), 0, candidate, 0, words)) < 0) {
+                    nextVisited.write(visited.current(), 0);
+                    hasVisited = visited.next();
+                }
+                if (hasVisited && order == 0) continue;
+                nextLayer.write(candidate, 0);
+                nextVisited.write(candidate, 0);
+            }
+            while (hasVisited) {
+                nextVisited.write(visited.current(), 0);
+                hasVisited = visited.next();
+            }
+            return nextLayer.count();
+        } finally {
+            for (StateRunReader run : runs) run.close();
+        }
+    }
+
+    /**
+     * Walks back from {@code state} in layer {@code depth} to the start, searching each earlier layer for a state one
+     * move away.
+     */
+    private Direction[] solution(int depth, long[] state, int lastMove) throws IOException {
+        Direction[] solution = new Direction[depth + 1];
+        solution[depth] = directions[lastMove];
+        long[] target = state.clone();
+        long[] successor = new long[words];
+        for (int d = depth; d > 0; --d) {
+            engine.restore(target, 0);
+            long targetHash = engine.hash();
+            boolean found = false;
+            try (StateRunReader layer = new StateRunReader(layerFile(d - 1), words)) {
+                while (!found && layer.next()) {
+                    for (Direction dir : directions) {
+                        engine.restore(layer.current(), 0);
+                        if (!engine.tryMove(dir) || engine.hash() != targetHash) continue;
+                        Arrays.fill(successor, 0L);
+                        StateSnapshot.pack(engine, successor, 0);
+                        if (StateRunWriter.compare(successor, 0, target, 0, words) != 0) continue;
+                        solution[d - 1] = dir;
+                        System.arraycopy(layer.current(), 0, target, 0, words);
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            checkState(found, "No state of layer %s leads to the path found", d - 1);
+        }
+        return solution;
+    }
+
+    private Solver.Result result(Direction[] solution, boolean exhausted, long states, long startMillis) {
+        return new Solver.Result(solution, exhausted, expanded, states, System.currentTimeMillis() - startMillis,
+                peakBytes);
+    }
+
+    private File layerFile(int depth) { return new File(directory, "layer-" + depth + ".run"); }
+
+    private File visitedFile(int depth) { return new File(directory, "visited-" + depth + ".run"); }
+
+    private File runFile(int index) { return new File(directory, "successors-" + index + ".run"); }
+
+    private void deleteRuns() throws IOException {
+        for (int i = 0; runFile(i).exists(); i++) Files.delete(runFile(i).toPath());
+        runCount = 0;
+    }
+
+    /**
+     * @return the bytes of all files in the directory, which is what the search uses instead of memory
+     */
+    private long diskBytes() {
+        long bytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) for (File file : files) bytes += file.length();
+        return bytes;
+    }
+
+    private Properties readManifest() throws IOException {
+        File file = new File(directory, manifestName);
+        if (!file.exists()) return null;
+        Properties manifest = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            manifest.load(in);
+        }
+        return manifest;
+    }
+
+    private void writeManifest(int depth, long states, Direction[] solution, boolean exhausted) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("level", level.title);
+        manifest.setProperty("fingerprint", fingerprint(level));
+        manifest.setProperty("depth", String.valueOf(depth));
+        manifest.setProperty("states", String.valueOf(states));
+        manifest.setProperty("expanded", String.valueOf(expanded));
+        manifest.setProperty("exhausted", String.valueOf(exhausted));
+        if (solution != null) manifest.setProperty("solution", Joiner.on(',').join(solution));
+        File temp = new File(directory, manifestName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            manifest.store(out, "Breadth-first search of " + level.title);
+            out.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), new File(directory, manifestName).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Direction[] parseSolution(String solution) {
+        List<Direction> moves = new ArrayList<>();
+        for (String move : Splitter.on(',').omitEmptyStrings().split(solution)) moves.add(Direction.valueOf(move));
+        return moves.toArray(new Direction[moves.size()]);
+    }
+
+    /**
+     * @return a hash of everything that makes up the level, to tell whether a directory belongs to it
+     */
+    static String fingerprint(Level level) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(level.dim.width()).append('x').append(level.dim.height())
+                .append(' ').append(level.playerStart).append(' ').append(level.playerGoal)
+                .append(' ').append(level.walls).append(level.pushEntity).append(level.expandoEntity);
+        for (Level.DoorLink doorLink : level.doorLinks) sb.append(doorLink.doors).append(doorLink.buttons);
+        return Hashing.murmur3_128().hashString(sb, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Sorts the states with indexes {@code from} until {@code to} in place, using {@code pivot} as scratch space.
+     */
+    private static void sort(long[] states, int words, long[] pivot, int from, int to) {
+        while (to - from > 16) {
+            int middle = (from + to) >>> 1;
+            System.arraycopy(states, median(states, words, from, middle, to - 1) * words, pivot, 0, words);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (StateRunWriter.compare(states, i * words, pivot, 0, words) < 0) ++i;
+                while (StateRunWriter.compare(states, j * words, pivot, 0, words) > 0) --j;
+                if (i <= j) swap(states, words, i++, j--);
+            }
+            // Recurse into the smaller part and go on with the larger one
+            if (j + 1 - from < to - i) {
+                sort(states, words, pivot, from, j + 1);
+                from = i;
+            } else {
+                sort(states, words, pivot, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && StateRunWriter.compare(states, j * words, states, (j - 1) * words, words) < 0; --j) {
+                swap(states, words, j, j - 1);
+            }
+        }
+    }
+
+    private static int median(long[] states, int words, int a, int b, int c) {
+        if (StateRunWriter.compare(states, a * words, states, b * words, words) > 0) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (StateRunWriter.compare(states, b * words, states, c * words, words) <= 0) return b;
+        return StateRunWriter.compare(states, a * words, states, c * words, words) > 0 ? a : c;
+    }
+
+    private static void swap(long[] states, int words, int i, int j) {
+        for (int k = 0, a = i * words, b = j * words; k < words; k++) {
+            long t = states[a + k];
+            states[a + k] = states[b + k];
+            states[b + k] = t;
+        }
+    }
+
+    /**
+     * Merges sorted runs into one sorted sequence, keeping the runs in a binary heap ordered by their current state.
+     */
+    private static final class RunMerger {
+        private final StateRunReader[] heap;
+        private final int words;
+        private int size;
+        private StateRunReader top;
+
+        RunMerger(List<StateRunReader> runs, int words) throws IOException {
+            this.heap = new StateRunReader[runs.size()];
+            this.words = words;
+            for (StateRunReader run : runs) {
+                if (run.next()) heap[size++] = run;
+            }
+            for (int i = size / 2 - 1; i >= 0; --i) siftDown(i);
+        }
+
+        /**
+         * Moves on to the next state, which may equal the one before if several runs hold it.
+         */
+        boolean next() throws IOException {
+            if (top != null) {
+                // Advance the run whose state was handed out last, it is still at the root
+                if (top.next()) {
+                    siftDown(0);
+                } else {
+                    heap[0] = heap[--size];
+                    if (size > 0) siftDown(0);
+                }
+            }
+            top = size > 0 ? heap[0] : null;
+            return top != null;
+        }
+
+        long[] current() { return top.current(); }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (StateRunWriter.compare(heap[child].current(), 0, heap[smallest].current(), 0, words) < 0) {
+                        smallest = child;
+                    }
+                }
+                if (smallest == i) return;
+                StateRunReader t = heap[i];
+                heap[i] = heap[smallest];
+                heap[smallest] = t;
+                i = smallest;
+            }
+        }
+    }
+}
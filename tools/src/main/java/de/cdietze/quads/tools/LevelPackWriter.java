@@ -0,0 +1,128 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.LevelCodec;
+import de.cdietze.quads.core.Levels;
+import de.cdietze.quads.core.Solver;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes levels to a binary level pack, see {@link LevelCodec} for the format and {@link LevelPackReader} for
+ * reading it back.
+ * <p>
+ * The records are kept in memory until {@link #close()}, which writes the header, the index, the titles and the
+ * records in one go. A record takes a few dozen bytes, so even packs of hundreds of thousands of levels are built in a
+ * few megabytes.
+ */
+public final class LevelPackWriter implements Closeable {
+
+    private static final int maxShort = 0xffff;
+    /** The most states {@code --solve} stores per level before giving up on it */
+    private static final int maxSolverStates = 2000000;
+
+    private final File path;
+    private final List<byte[]> titles = new ArrayList<>();
+    private final List<byte[]> records = new ArrayList<>();
+    private final List<int[]> metadata = new ArrayList<>();
+    private boolean closed;
+
+    public LevelPackWriter(File path) {
+        this.path = path;
+    }
+
+    /**
+     * Adds a level whose shortest solution is not known.
+     */
+    public LevelPackWriter add(Level level) { return add(level, -1); }
+
+    public LevelPackWriter add(Level level, int solutionLength) {
+        checkState(!closed, "The pack has been written already");
+        byte[] title = level.title == null ? new byte[0] : level.title.getBytes(StandardCharsets.UTF_8);
+        checkArgument(title.length <= maxShort, "Title of %s bytes is too long", title.length);
+        checkArgument(level.dim.width <= maxShort && level.dim.height <= maxShort, "Level too big: %s", level.dim);
+        checkArgument(level.pushEntity.size() <= maxShort && level.expandoEntity.size() <= maxShort
+                        && level.doorLinks.size() <= maxShort, "Too many pushers, expandos or door links: %s, %s, %s",
+                level.pushEntity.size(), level.expandoEntity.size(), level.doorLinks.size());
+        titles.add(title);
+        records.add(LevelCodec.encode(level));
+        metadata.add(new int[]{level.dim.width, level.dim.height, level.pushEntity.size(), level.expandoEntity.size(),
+                level.doorLinks.size(), solutionLength});
+        return this;
+    }
+
+    public int size() { return records.size(); }
+
+    /**
+     * Writes the pack.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        int count = records.size();
+        long titlesStart = LevelCodec.headerSize + (long) count * LevelCodec.entrySize;
+        long titlesLength = 0;
+        for (byte[] title : titles) titlesLength += title.length;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            out.writeInt(LevelCodec.magic);
+            out.writeShort(LevelCodec.version);
+            out.writeShort(0);
+            out.writeInt(count);
+            out.writeInt(0);
+            long recordOffset = titlesStart + titlesLength;
+            int titleOffset = 0;
+            for (int i = 0; i < count; i++) {
+                int[] meta = metadata.get(i);
+                out.writeLong(recordOffset);
+                out.writeInt(records.get(i).length);
+                out.writeInt(titleOffset);
+                out.writeShort(titles.get(i).length);
+                for (int j = 0; j < 5; j++) out.writeShort(meta[j]);
+                out.writeInt(meta[5]);
+                recordOffset += records.get(i).length;
+                titleOffset += titles.get(i).length;
+            }
+            for (byte[] title : titles) out.write(title);
+            for (byte[] record : records) out.write(record);
+        }
+    }
+
+    /**
+     * Converts text level packs, or the built-in levels if none are given, to a binary pack.
+     * <p>
+     * Usage: {@code LevelPackWriter [--solve] <pack> [text pack ...]}. With {@code --solve} the shortest solution of
+     * every level is searched for and stored in the index, levels that take too long keep -1.
+     */
+    public static void main(String[] args) throws IOException {
+        int arg = 0;
+        boolean solve = args.length > 0 && args[0].equals("--solve");
+        if (solve) ++arg;
+        checkArgument(args.length > arg, "Usage: LevelPackWriter [--solve] <pack> [text pack ...]");
+        File out = new File(args[arg++]);
+        List<Level> levels = new ArrayList<>();
+        if (arg == args.length) levels.addAll(Levels.levels);
+        for (; arg < args.length; arg++) levels.addAll(LevelTextPacks.read(new File(args[arg])));
+
+        long start = System.currentTimeMillis();
+        try (LevelPackWriter writer = new LevelPackWriter(out)) {
+            for (Level level : levels) {
+                Solver.Result result = solve ? new Solver(level).maxStates(maxSolverStates).solve() : null;
+                writer.add(level, result != null && result.isSolved() ? result.solution.length : -1);
+            }
+        }
+        System.out.printf("Wrote %d levels to %s, %d bytes in %d ms%n", levels.size(), out, out.length(),
+                System.currentTimeMillis() - start);
+    }
+}
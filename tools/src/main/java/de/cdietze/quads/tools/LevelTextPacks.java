@@ -0,0 +1,215 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.LevelCatalog;
+import de.cdietze.quads.core.LevelTextParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reads UTF-8 text level packs, see {@link LevelTextParser} for the format, from readers, channels and files.
+ * <p>
+ * Everything is read in a single pass through a small buffer, so a pack takes the memory of its largest level plus
+ * the levels that are kept. {@link #readParallel} splits a file at blank lines between levels and parses the parts
+ * on several threads, with the line numbers of errors still counting from the start of the file.
+ */
+public final class LevelTextPacks {
+
+    private static final int bufferChars = 8192;
+    /** Parts per thread, so that threads which finish early take on more */
+    private static final int partsPerThread = 4;
+
+    private LevelTextPacks() {}
+
+    public static void parse(Reader reader, LevelTextParser.Listener listener) throws IOException {
+        LevelTextParser parser = new LevelTextParser(listener);
+        char[] buffer = new char[bufferChars];
+        for (int n; (n = reader.read(buffer)) >= 0; ) parser.feed(buffer, 0, n);
+        parser.end();
+    }
+
+    public static void parse(ReadableByteChannel channel, LevelTextParser.Listener listener) throws IOException {
+        parse(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), bufferChars), listener);
+    }
+
+    public static List<Level> read(Reader reader) throws IOException {
+        List<Level> levels = new ArrayList<>();
+        parse(reader, collector(levels));
+        return levels;
+    }
+
+    public static List<Level> read(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            List<Level> levels = new ArrayList<>();
+            parse(in.getChannel(), collector(levels));
+            return levels;
+        }
+    }
+
+    /**
+     * Reads the pack at {@code file} into a {@link LevelCatalog.Source} named after the file without the extension.
+     * Text packs have no index, so all their levels are read up front.
+     */
+    public static LevelCatalog.Source source(File file) throws IOException {
+        return LevelCatalog.source(LevelPackReader.sourceName(file), read(file));
+    }
+
+    /**
+     * Reads a pack of up to 2 GB on {@code threads} threads.
+     *
+     * @return the levels in the order of the file
+     */
+    public static List<Level> readParallel(File file, int threads) throws IOException {
+        checkArgument(threads > 0, "threads must be positive: %s", threads);
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Text packs are limited to 2 GB: " + file);
+            final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final int[] starts = split(bytes, threads * partsPerThread);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                // Count the lines of every part first, so the parts know the number of their first line
+                List<Future<Integer>> lineCounts = new ArrayList<>();
+                for (int i = 0; i < starts.length - 1; i++) {
+                    final int part = i;
+                    lineCounts.add(pool.submit(new Callable<Integer>() {
+                        @Override public Integer call() { return countLines(bytes, starts[part], starts[part + 1]); }
+                    }));
+                }
+                List<Future<List<Level>>> parts = new ArrayList<>();
+                int firstLine = 1;
+                for (int i = 0; i < starts.length - 1; i++) {
+                    final int part = i;
+                    final int partFirstLine = firstLine;
+                    parts.add(pool.submit(new Callable<List<Level>>() {
+                        @Override public List<Level> call() throws IOException {
+                            List<Level> levels = new ArrayList<>();
+                            LevelTextParser parser = new LevelTextParser(collector(levels), partFirstLine);
+                            decode(slice(bytes, starts[part], starts[part + 1]), parser);
+                            parser.end();
+                            return levels;
+                        }
+                    }));
+                    firstLine += get(lineCounts.get(i));
+                }
+                List<Level> levels = new ArrayList<>();
+                for (Future<List<Level>> part : parts) levels.addAll(get(part));
+                return levels;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return the start of every part and the end of the last one. Parts start at a blank line, so each holds whole
+     * levels.
+     */
+    private static int[] split(ByteBuffer bytes, int maxParts) {
+        int size = bytes.limit();
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int part = 1; part < maxParts; part++) {
+            int start = nextBlankLine(bytes, Math.max(starts.get(starts.size() - 1) + 1, (int) ((long) size * part / maxParts)));
+            if (start >= size) break;
+            starts.add(start);
+        }
+        int[] result = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) result[i] = starts.get(i);
+        result[starts.size()] = size;
+        return result;
+    }
+
+    /**
+     * @return the start of the first blank line that starts at or after {@code from}, or the size of {@code bytes}
+     */
+    private static int nextBlankLine(ByteBuffer bytes, int from) {
+        int size = bytes.limit();
+        // Move to the start of a line
+        int position = from;
+        while (position < size && position > 0 && bytes.get(position - 1) != '\n') ++position;
+        while (position < size) {
+            int end = position;
+            while (end < size && bytes.get(end) != '\n' && (bytes.get(end) & 0xff) <= ' ') ++end;
+            if (end == size || bytes.get(end) == '\n') return position;
+            while (end < size && bytes.get(end) != '\n') ++end;
+            position = end + 1;
+        }
+        return size;
+    }
+
+    private static int countLines(ByteBuffer bytes, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == '\n') ++lines;
+        }
+        return lines;
+    }
+
+    private static ByteBuffer slice(ByteBuffer bytes, int from, int to) {
+        ByteBuffer slice = bytes.duplicate();
+        slice.limit(to);
+        slice.position(from);
+        return slice;
+    }
+
+    /**
+     * Feeds UTF-8 {@code bytes} to {@code parser} through a small buffer.
+     */
+    private static void decode(ByteBuffer bytes, LevelTextParser parser) throws CharacterCodingException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        CharBuffer chars = CharBuffer.allocate(bufferChars);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isError()) result.throwException();
+            chars.flip();
+            parser.feed(chars.array(), 0, chars.limit());
+            chars.clear();
+            if (result.isUnderflow()) break;
+        }
+        decoder.flush(chars);
+        chars.flip();
+        parser.feed(chars.array(), 0, chars.limit());
+    }
+
+    private static LevelTextParser.Listener collector(final List<Level> levels) {
+        return new LevelTextParser.Listener() {
+            @Override public void onLevel(Level level) { levels.add(level); }
+        };
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
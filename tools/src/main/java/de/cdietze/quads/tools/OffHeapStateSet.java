@@ -0,0 +1,241 @@
+package de.cdietze.quads.tools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link StateSet} whose states live outside the Java heap, for searches too large for {@link ConcurrentStateSet}.
+ * <p>
+ * The set is split into lock-striped segments by hash, each one an open-addressing table with linear probing in a
+ * direct {@link ByteBuffer}. A slot holds the state's hash, the layer it was found in, its position in that layer's
+ * key list and the packed state padded to the level's longest one; a zero hash marks a free slot. Only the keys and
+ * slots of the current layer are kept on the heap. The garbage collector never looks into the buffers, so hundreds of
+ * millions of states cost no more collection time than a few.
+ * <p>
+ * All buffers together never exceed the ceiling given to the constructor. A segment that would have to grow beyond it
+ * keeps filling up to a load factor of {@link #hardLoadFactor}, after that new states are dropped and {@link #isFull}
+ * tells the search that its current layer is incomplete. Replaced buffers are released by the garbage collector, so
+ * until then the process may hold more direct memory than {@link #allocatedBytes} reports.
+ */
+final class OffHeapStateSet implements StateSet {
+
+    /** Segments double their capacity when they get fuller than this */
+    static final double maxLoadFactor = 0.75;
+    /** How full a segment may get when it cannot grow */
+    static final double hardLoadFactor = 0.9;
+    private static final int initialCapacity = 64;
+    /** Hash, layer and position in the layer */
+    private static final int headerBytes = 16;
+
+    private final Segment[] segments;
+    private final int slotBytes;
+    private final long maxBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private volatile boolean full;
+    /** The layer being expanded, only changed between layers */
+    private int layer;
+
+    /**
+     * @param maxWordCount the length of the longest state that will be offered
+     * @param maxBytes     the ceiling for all buffers together
+     */
+    OffHeapStateSet(int segmentCount, int maxWordCount, long maxBytes) {
+        this.slotBytes = headerBytes + 8 * maxWordCount;
+        this.maxBytes = maxBytes;
+        segments = new Segment[Integer.highestOneBit(Math.max(1, segmentCount))];
+        checkArgument((long) segments.length * initialCapacity * slotBytes <= maxBytes,
+                "%s bytes are not enough for %s empty segments", maxBytes, segments.length);
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
+    }
+
+    @Override
+    public void offer(long[] state, int offset, int wordCount, long hash, long key) {
+        segments[(int) (hash >>> 40) & (segments.length - 1)].offer(state, offset, wordCount, hash, key);
+    }
+
+    @Override
+    public void drainLayer(SearchLayer next) {
+        int count = 0;
+        for (Segment segment : segments) count += segment.layerSize;
+        // Sort by key with the entry's ordinal in the low bits, keys are unique within a layer
+        long[] order = new long[count];
+        long[] entries = new long[count];
+        int ordinal = 0;
+        for (int s = 0; s < segments.length; s++) {
+            Segment segment = segments[s];
+            for (int e = 0; e < segment.layerSize; e++, ordinal++) {
+                order[ordinal] = segment.layerKeys[e] << 31 | ordinal;
+                entries[ordinal] = (long) s << 32 | e;
+            }
+        }
+        Arrays.sort(order);
+        long[] state = new long[(slotBytes - headerBytes) / 8];
+        for (long sortKey : order) {
+            long entry = entries[(int) (sortKey & Integer.MAX_VALUE)];
+            Segment segment = segments[(int) (entry >>> 32)];
+            int e = (int) entry;
+            long key = segment.layerKeys[e];
+            int wordCount = segment.layerWordCounts[e];
+            segment.read(segment.layerSlots[e], state, wordCount);
+            next.add(state, 0, wordCount, (int) (key >>> 2), (int) (key & 3));
+        }
+        startLayer();
+    }
+
+    @Override
+    public void startLayer() {
+        ++layer;
+        for (Segment segment : segments) segment.layerSize = 0;
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    /**
+     * @return the bytes of the live buffers plus those of the current layer's lists on the heap
+     */
+    @Override
+    public long allocatedBytes() {
+        long bytes = reservedBytes.get();
+        for (Segment segment : segments) bytes += 16L * segment.layerKeys.length;
+        return bytes;
+    }
+
+    @Override
+    public double loadFactor() {
+        long capacity = 0;
+        for (Segment segment : segments) capacity += segment.capacity;
+        return (double) size() / capacity;
+    }
+
+    @Override
+    public boolean isFull() { return full; }
+
+    /**
+     * @return the ceiling for the off-heap memory
+     */
+    long maxBytes() { return maxBytes; }
+
+    private boolean reserve(long bytes) {
+        for (long current = reservedBytes.get(); current + bytes <= maxBytes; current = reservedBytes.get()) {
+            if (reservedBytes.compareAndSet(current, current + bytes)) return true;
+        }
+        return false;
+    }
+
+    private final class Segment {
+        ByteBuffer slots;
+        int capacity;
+        int size;
+        // The slots, keys and word counts of the states found during the current layer
+        int[] layerSlots = new int[16];
+        long[] layerKeys = new long[16];
+        int[] layerWordCounts = new int[16];
+        int layerSize;
+
+        Segment() {
+            reserve((long) initialCapacity * slotBytes);
+            capacity = initialCapacity;
+            slots = allocate(capacity);
+        }
+
+        synchronized void offer(long[] state, int offset, int wordCount, long hash, long key) {
+            long stored = hash == 0L ? 1L : hash;
+            int slot = (int) stored & (capacity - 1);
+            for (int base = slot * slotBytes; slots.getLong(base) != 0L; base = slot * slotBytes) {
+                if (slots.getLong(base) == stored && matches(base, state, offset, wordCount)) {
+                    if (slots.getInt(base + 8) == layer) {
+                        int e = slots.getInt(base + 12);
+                        if (key < layerKeys[e]) layerKeys[e] = key;
+                    }
+                    return;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (size + 1 > capacity * maxLoadFactor) {
+                if (grow()) {
+                    slot = freeSlot(stored);
+                } else if (size + 1 > capacity * hardLoadFactor) {
+                    full = true;
+                    return;
+                }
+            }
+            if (layerSize == layerKeys.length) {
+                layerSlots = Arrays.copyOf(layerSlots, layerSize * 2);
+                layerKeys = Arrays.copyOf(layerKeys, layerSize * 2);
+                layerWordCounts = Arrays.copyOf(layerWordCounts, layerSize * 2);
+            }
+            int base = slot * slotBytes;
+            slots.putLong(base, stored);
+            slots.putInt(base + 8, layer);
+            slots.putInt(base + 12, layerSize);
+            for (int i = 0; i < wordCount; i++) slots.putLong(base + headerBytes + 8 * i, state[offset + i]);
+            layerSlots[layerSize] = slot;
+            layerKeys[layerSize] = key;
+            layerWordCounts[layerSize] = wordCount;
+            ++layerSize;
+            ++size;
+        }
+
+        /**
+         * Copies the state in {@code slot} into {@code state}.
+         */
+        void read(int slot, long[] state, int wordCount) {
+            int base = slot * slotBytes + headerBytes;
+            for (int i = 0; i < wordCount; i++) state[i] = slots.getLong(base + 8 * i);
+        }
+
+        // The tail size is packed into the first words, so states that agree on wordCount words have the same length
+        private boolean matches(int base, long[] state, int offset, int wordCount) {
+            for (int i = 0; i < wordCount; i++) {
+                if (slots.getLong(base + headerBytes + 8 * i) != state[offset + i]) return false;
+            }
+            return true;
+        }
+
+        private int freeSlot(long stored) {
+            int slot = (int) stored & (capacity - 1);
+            while (slots.getLong(slot * slotBytes) != 0L) slot = (slot + 1) & (capacity - 1);
+            return slot;
+        }
+
+        /**
+         * Doubles the capacity unless that would cross the ceiling or the size limit of a buffer.
+         *
+         * @return whether the segment grew
+         */
+        private boolean grow() {
+            long oldBytes = (long) capacity * slotBytes;
+            long newBytes = 2 * oldBytes;
+            // Both buffers are alive while rehashing
+            if (newBytes > Integer.MAX_VALUE || !reserve(newBytes)) return false;
+            ByteBuffer old = slots;
+            int oldCapacity = capacity;
+            capacity *= 2;
+            slots = allocate(capacity);
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                int oldBase = oldSlot * slotBytes;
+                long stored = old.getLong(oldBase);
+                if (stored == 0L) continue;
+                int slot = freeSlot(stored);
+                int base = slot * slotBytes;
+                for (int i = 0; i < slotBytes; i += 8) slots.putLong(base + i, old.getLong(oldBase + i));
+                if (old.getInt(oldBase + 8) == layer) layerSlots[old.getInt(oldBase + 12)] = slot;
+            }
+            reservedBytes.addAndGet(-oldBytes);
+            return true;
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * slotBytes).order(ByteOrder.nativeOrder());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Solver;
+import de.cdietze.quads.core.StateSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Layer-by-layer breadth-first search that expands each layer on a {@link ForkJoinPool}.
+ * <p>
+ * Work-stealing tasks split the layer into ranges, every worker thread has its own {@link Engine}, and new states go
+ * into a {@link ConcurrentStateSet}. Each new layer is put into the order a sequential search would have found its
+ * states in, and among several winning moves the one first in that order wins. Therefore the solution is the same
+ * whatever the number of threads. It is a shortest one, though not necessarily the one {@link Solver} finds.
+ * <p>
+ * The visited states are kept in a {@link ConcurrentStateSet} on the heap, or with {@link #offHeap} in an
+ * {@link OffHeapStateSet} under a memory ceiling. Layers keep only parents and moves once they are expanded.
+ */
+public final class ParallelSolver {
+
+    /** The number of states a task expands without splitting further */
+    private static final int grain = 512;
+    private static final Direction[] directions = Direction.values();
+
+    public final Level level;
+    private final int threads;
+    private long maxStates = Long.MAX_VALUE;
+    private long maxOffHeapBytes;
+    private StateSet visited;
+
+    public ParallelSolver(Level level, int threads) {
+        this.level = level;
+        this.threads = threads;
+    }
+
+    /**
+     * Aborts the search after the layer during which this many states were stored.
+     */
+    public ParallelSolver maxStates(long maxStates) {
+        this.maxStates = maxStates;
+        return this;
+    }
+
+    /**
+     * Keeps the visited states outside the heap, using at most {@code maxBytes} for them. The search is aborted after
+     * the layer during which the ceiling was hit.
+     */
+    public ParallelSolver offHeap(long maxBytes) {
+        this.maxOffHeapBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @return the load factor of the last search's visited set
+     */
+    public double loadFactor() { return visited.loadFactor(); }
+
+    /**
+     * @return the bytes the last search's visited set allocated per stored state
+     */
+    public double bytesPerState() { return (double) visited.allocatedBytes() / Math.max(1L, visited.size()); }
+
+    public Solver.Result solve() {
+        long startMillis = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return search(pool, startMillis);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Solver.Result search(ForkJoinPool pool, long startMillis) {
+        final ThreadLocal<Engine> engines = new ThreadLocal<Engine>() {
+            @Override protected Engine initialValue() { return new Engine(level); }
+        };
+        final ThreadLocal<long[]> scratches = new ThreadLocal<long[]>() {
+            @Override protected long[] initialValue() { return new long[StateSnapshot.maxWordCount(level)]; }
+        };
+        int segmentCount = threads * 64;
+        StateSet visited = maxOffHeapBytes > 0
+                ? new OffHeapStateSet(segmentCount, StateSnapshot.maxWordCount(level), maxOffHeapBytes)
+                : new ConcurrentStateSet(segmentCount);
+        this.visited = visited;
+        List<SearchLayer> layers = new ArrayList<>();
+
+        Engine engine = engines.get();
+        long[] state = scratches.get();
+        int wordCount = StateSnapshot.wordCount(level, 0);
+        StateSnapshot.pack(engine, state, 0);
+        visited.offer(state, 0, wordCount, engine.hash(), 0L);
+        visited.startLayer();
+        SearchLayer layer = new SearchLayer();
+        layer.add(state, 0, wordCount, -1, -1);
+
+        long expanded = 0;
+        long peakBytes = 0;
+        while (layer.size() > 0) {
+            layers.add(layer);
+            AtomicLong winningKey = new AtomicLong(Long.MAX_VALUE);
+            pool.invoke(new Expand(layer, 0, layer.size(), visited, winningKey, engines, scratches));
+            expanded += layer.size();
+            peakBytes = Math.max(peakBytes, allocatedBytes(visited, layers));
+            layer.dropStates();
+            if (winningKey.get() != Long.MAX_VALUE) {
+                return result(solution(layers, winningKey.get()), false, expanded, visited, startMillis, peakBytes);
+            }
+            if (visited.isFull() || visited.size() >= maxStates) {
+                return result(null, false, expanded, visited, startMillis, peakBytes);
+            }
+            SearchLayer next = new SearchLayer();
+            visited.drainLayer(next);
+            layer = next;
+        }
+        return result(null, true, expanded, visited, startMillis, peakBytes);
+    }
+
+    private static Direction[] solution(List<SearchLayer> layers, long winningKey) {
+        Direction[] solution = new Direction[layers.size()];
+        solution[layers.size() - 1] = directions[(int) (winningKey & 3)];
+        int position = (int) (winningKey >>> 2);
+        for (int depth = layers.size() - 1; depth > 0; --depth) {
+            SearchLayer layer = layers.get(depth);
+            solution[depth - 1] = directions[layer.move(position)];
+            position = layer.parent(position);
+        }
+        return solution;
+    }
+
+    private static long allocatedBytes(StateSet visited, List<SearchLayer> layers) {
+        long bytes = visited.allocatedBytes();
+        for (SearchLayer layer : layers) bytes += layer.allocatedBytes();
+        return bytes;
+    }
+
+    private static Solver.Result result(Direction[] solution, boolean exhausted, long expanded,
+                                        StateSet visited, long startMillis, long peakBytes) {
+        return new Solver.Result(solution, exhausted, expanded, visited.size(),
+                System.currentTimeMillis() - startMillis, peakBytes);
+    }
+
+    private final class Expand extends RecursiveAction {
+        private final SearchLayer layer;
+        private final int from;
+        private final int to;
+        private final StateSet visited;
+        private final AtomicLong winningKey;
+        private final ThreadLocal<Engine> engines;
+        private final ThreadLocal<long[]> scratches;
+
+        Expand(SearchLayer layer, int from, int to, StateSet visited, AtomicLong winningKey,
+               ThreadLocal<Engine> engines, ThreadLocal<long[]> scratches) {
+            this.layer = layer;
+            this.from = from;
+            this.to = to;
+            this.visited = visited;
+            this.winningKey = winningKey;
+            this.engines = engines;
+            this.scratches = scratches;
+        }
+
+        @Override protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Expand(layer, from, middle, visited, winningKey, engines, scratches),
+                        new Expand(layer, middle, to, visited, winningKey, engines, scratches));
+                return;
+            }
+            Engine engine = engines.get();
+            long[] state = scratches.get();
+            for (int position = from; position < to; position++) {
+                boolean restored = false;
+                for (Direction dir : directions) {
+                    if (!restored) {
+                        layer.restore(engine, position);
+                        restored = true;
+                    }
+                    if (!engine.tryMove(dir)) continue;
+                    restored = false;
+                    long key = position * 4L + dir.ordinal();
+                    if (engine.hasWon()) {
+                        for (long current = winningKey.get(); key < current; current = winningKey.get()) {
+                            if (winningKey.compareAndSet(current, key)) break;
+                        }
+                        continue;
+                    }
+                    // A push may have frozen pushers in a way that rules out winning
+                    if (engine.lastPushCount() > 0 && engine.isDeadEnd()) continue;
+                    int wordCount = StateSnapshot.wordCount(level, engine.tail().size());
+                    Arrays.fill(state, 0, wordCount, 0L);
+                    StateSnapshot.pack(engine, state, 0);
+                    visited.offer(state, 0, wordCount, engine.hash(), key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.BoardState;
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how many moves per second the {@link ReplayVerifier} checks with 1, 2, 4, 8 and 16 threads, on random
+ * replays of the built-in levels. A few replays in every hundred contain a random move that may be illegal. Before
+ * measuring, a sample of the verdicts is checked against replays on {@link BoardState}, and the replays are sorted by
+ * level.
+ * <p>
+ * Usage: {@code ReplayThroughputReport [replays]}, defaults to 100000 replays of up to 400 moves each.
+ */
+public final class ReplayThroughputReport {
+    private ReplayThroughputReport() {}
+
+    private static final int[] threadCounts = {1, 2, 4, 8, 16};
+    private static final int maxMoves = 400;
+    private static final int rounds = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Random random = new Random(1L);
+        List<ReplayVerifier.Replay> replays = new ArrayList<>(count);
+        long moves = 0;
+        for (int i = 0; i < count; i++) {
+            ReplayVerifier.Replay replay = randomReplay(Levels.levels.get(i % Levels.levels.size()), random);
+            replays.add(replay);
+            moves += replay.moves.length;
+        }
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + count + " replays, "
+                + moves + " moves");
+        checkAgainstBoardState(replays.subList(0, Math.min(count, 2000)));
+        // The verifier keeps one engine per thread, for the level it verified last
+        Collections.sort(replays, new Comparator<ReplayVerifier.Replay>() {
+            @Override public int compare(ReplayVerifier.Replay a, ReplayVerifier.Replay b) {
+                return Integer.compare(Levels.catalog.indexOf(a.level), Levels.catalog.indexOf(b.level));
+            }
+        });
+
+        System.out.printf("%7s %10s %14s %16s%n", "threads", "millis", "moves/s", "moves/s/thread");
+        for (int threads : threadCounts) {
+            ReplayVerifier verifier = new ReplayVerifier(threads);
+            try {
+                // The first round warms up the JIT
+                verifier.verify(replays);
+                long startMillis = System.currentTimeMillis();
+                for (int round = 0; round < rounds; round++) verifier.verify(replays);
+                long millis = Math.max(1L, System.currentTimeMillis() - startMillis);
+                double movesPerSecond = rounds * moves * 1000d / millis;
+                System.out.printf("%7d %10d %14d %16d%n", threads, millis / rounds, (long) movesPerSecond,
+                        (long) (movesPerSecond / threads));
+            } finally {
+                verifier.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Walks randomly along legal moves until the level is won or the walk is long enough. Now and then one move is
+     * taken at random, legal or not.
+     */
+    private static ReplayVerifier.Replay randomReplay(Level level, Random random) {
+        Engine engine = new Engine(level);
+        Direction[] directions = Direction.values();
+        Direction[] moves = new Direction[1 + random.nextInt(maxMoves)];
+        int randomMove = random.nextInt(100) < 3 ? random.nextInt(moves.length) : -1;
+        int length = 0;
+        while (length < moves.length && !engine.hasWon()) {
+            Direction dir = directions[random.nextInt(directions.length)];
+            if (length != randomMove) {
+                for (int tries = 0; tries < directions.length && !engine.canMove(dir); tries++) {
+                    dir = directions[(dir.ordinal() + 1) % directions.length];
+                }
+                if (!engine.canMove(dir)) break;
+            }
+            engine.tryMove(dir);
+            moves[length++] = dir;
+        }
+        Direction[] replay = new Direction[length];
+        System.arraycopy(moves, 0, replay, 0, length);
+        return new ReplayVerifier.Replay(level, replay);
+    }
+
+    private static void checkAgainstBoardState(List<ReplayVerifier.Replay> replays) {
+        ReplayVerifier verifier = new ReplayVerifier(1);
+        ReplayVerifier.Verdict[] verdicts = verifier.verify(replays);
+        verifier.shutdown();
+        for (int i = 0; i < replays.size(); i++) {
+            ReplayVerifier.Replay replay = replays.get(i);
+            BoardState state = new BoardState(replay.level);
+            int illegalMove = -1;
+            for (int m = 0; m < replay.moves.length && illegalMove < 0; m++) {
+                if (!state.tryMovePlayer(replay.moves[m])) illegalMove = m;
+            }
+            ReplayVerifier.Verdict verdict = verdicts[i];
+            if (verdict.illegalMove != illegalMove || verdict.won != state.playerWon.get()
+                    || verdict.finalHash != state.hash()) {
+                throw new AssertionError("Replay " + i + " differs from BoardState: " + verdict);
+            }
+        }
+        System.out.println(replays.size() + " verdicts agree with BoardState");
+    }
+}
@@ -0,0 +1,147 @@
+package de.cdietze.quads.tools;
+
+import com.google.common.base.MoreObjects;
+import de.cdietze.quads.core.BoardState;
+import de.cdietze.quads.core.Direction;
+import de.cdietze.quads.core.Engine;
+import de.cdietze.quads.core.Level;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks submitted solutions in bulk by replaying them on {@link Engine}s, which follow the same rules as
+ * {@link BoardState#tryMovePlayer} without building a board per replay.
+ * <p>
+ * Batches are split over a {@link ForkJoinPool}. Every worker thread keeps the engine of the level it verified last and
+ * resets it for each replay, so a batch sorted by level allocates nothing but the verdicts and an engine per level
+ * and thread. Engines of other levels are left to the garbage collector, however many levels a pack has.
+ */
+public final class ReplayVerifier {
+
+    /** The number of replays a task verifies without splitting further */
+    private static final int grain = 64;
+
+    public static final class Replay {
+        public final Level level;
+        public final Direction[] moves;
+
+        public Replay(Level level, Direction[] moves) {
+            this.level = level;
+            this.moves = moves;
+        }
+    }
+
+    public static final class Verdict {
+        /** Whether the moves up to the first illegal one, or all of them, won the level */
+        public final boolean won;
+        /** The index of the first move that could not be made or -1, moves after winning are illegal too */
+        public final int illegalMove;
+        /**
+         * The {@link Engine#hash()}, which equals {@link BoardState#hash()}, of the state the replay ended in, i.e.
+         * before the illegal move if there is one
+         */
+        public final long finalHash;
+
+        public Verdict(boolean won, int illegalMove, long finalHash) {
+            this.won = won;
+            this.illegalMove = illegalMove;
+            this.finalHash = finalHash;
+        }
+
+        /**
+         * @return whether the replay is a valid solution: every move legal and the level won with the last one
+         */
+        public boolean isSolution() { return won && illegalMove < 0; }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("won", won)
+                    .add("illegalMove", illegalMove)
+                    .add("finalHash", Long.toHexString(finalHash))
+                    .toString();
+        }
+    }
+
+    private final ForkJoinPool pool;
+    /** The last engine of every worker thread, so that {@link #shutdown()} can drop them */
+    private final Queue<Engine[]> lastEngines = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Engine[]> lastEngine = new ThreadLocal<Engine[]>() {
+        @Override protected Engine[] initialValue() {
+            Engine[] engine = new Engine[1];
+            lastEngines.add(engine);
+            return engine;
+        }
+    };
+
+    public ReplayVerifier(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Verifies all replays, using every thread of this verifier.
+     *
+     * @return the verdicts in the order of {@code replays}
+     */
+    public Verdict[] verify(List<Replay> replays) {
+        Verdict[] verdicts = new Verdict[replays.size()];
+        pool.invoke(new Verify(replays, verdicts, 0, replays.size()));
+        return verdicts;
+    }
+
+    /**
+     * Stops the worker threads, verifying afterwards is not possible.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        for (Engine[] engine : lastEngines) engine[0] = null;
+        lastEngines.clear();
+    }
+
+    /**
+     * Replays {@code moves} from the engine's start state.
+     */
+    public static Verdict verify(Engine engine, Direction[] moves) {
+        engine.reset();
+        for (int i = 0; i < moves.length; i++) {
+            if (!engine.tryMove(moves[i])) return new Verdict(engine.hasWon(), i, engine.hash());
+        }
+        return new Verdict(engine.hasWon(), -1, engine.hash());
+    }
+
+    private Engine engine(Level level) {
+        Engine[] engine = lastEngine.get();
+        if (engine[0] == null || engine[0].level != level) engine[0] = new Engine(level);
+        return engine[0];
+    }
+
+    private final class Verify extends RecursiveAction {
+        private final List<Replay> replays;
+        private final Verdict[] verdicts;
+        private final int from;
+        private final int to;
+
+        Verify(List<Replay> replays, Verdict[] verdicts, int from, int to) {
+            this.replays = replays;
+            this.verdicts = verdicts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Verify(replays, verdicts, from, middle), new Verify(replays, verdicts, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Replay replay = replays.get(i);
+                verdicts[i] = verify(engine(replay.level), replay.moves);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Engine;
+
+import java.util.Arrays;
+
+/**
+ * The states of one breadth-first search layer in the order they are expanded, each with the position of its parent
+ * in the previous layer and the move that led to it.
+ * <p>
+ * Once a layer is expanded its states can be dropped, the parents and moves are all a solution needs.
+ */
+final class SearchLayer {
+
+    private long[] words = new long[256];
+    private int wordsUsed;
+    private int[] offsets = new int[65];
+    private int[] parents = new int[64];
+    private byte[] moves = new byte[64];
+    private int size;
+
+    int size() { return size; }
+
+    void add(long[] state, int offset, int wordCount, int parent, int move) {
+        if (size == parents.length) {
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            parents = Arrays.copyOf(parents, size * 2);
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        if (wordsUsed + wordCount > words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, wordsUsed + wordCount));
+        }
+        System.arraycopy(state, offset, words, wordsUsed, wordCount);
+        wordsUsed += wordCount;
+        parents[size] = parent;
+        moves[size] = (byte) move;
+        offsets[++size] = wordsUsed;
+    }
+
+    void restore(Engine engine, int position) { engine.restore(words, offsets[position]); }
+
+    /**
+     * Frees the states, after which only {@link #parent} and {@link #move} can be read.
+     */
+    void dropStates() {
+        words = null;
+        offsets = null;
+    }
+
+    int parent(int position) { return parents[position]; }
+
+    int move(int position) { return moves[position]; }
+
+    long allocatedBytes() {
+        long bytes = 4L * parents.length + moves.length;
+        return words == null ? bytes : bytes + 8L * words.length + 4L * offsets.length;
+    }
+}
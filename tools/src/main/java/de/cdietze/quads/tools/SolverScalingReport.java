@@ -0,0 +1,63 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.Levels;
+import de.cdietze.quads.core.Solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the {@link ParallelSolver} over the built-in and some synthetic levels with 1, 2, 4, 8 and 16 threads and
+ * prints how the throughput scales. Every run must find the same solution as the single threaded one. Each level is
+ * solved once before measuring to warm up the JIT. A last run per level keeps the visited states off the heap with
+ * the most threads, and every run shows the load factor and the bytes per state of its visited set.
+ * <p>
+ * Usage: {@code SolverScalingReport [maxStates [maxOffHeapMegabytes]]}, the state cap bounds the work per level and
+ * defaults to 2 million, the off-heap ceiling defaults to 1024 MB.
+ */
+public final class SolverScalingReport {
+    private SolverScalingReport() {}
+
+    private static final int[] threadCounts = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) {
+        long maxStates = args.length > 0 ? Long.parseLong(args[0]) : 2000000L;
+        long maxOffHeapBytes = (args.length > 1 ? Long.parseLong(args[1]) : 1024L) << 20;
+        List<Level> levels = new ArrayList<>(Levels.levels);
+        levels.add(SyntheticLevels.generate(16, 16, 12, 3, 1L));
+        levels.add(SyntheticLevels.generate(32, 32, 40, 4, 2L));
+        levels.add(SyntheticLevels.generate(64, 48, 120, 4, 3L));
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors, at most " + maxStates + " states");
+        System.out.printf("%-40s %8s %6s %10s %9s %12s %8s %5s %8s %s%n",
+                "level", "threads", "moves", "states", "millis", "states/s", "speedup", "load", "B/state", "same");
+        for (Level level : levels) {
+            new ParallelSolver(level, 1).maxStates(maxStates).solve();
+            Solver.Result single = null;
+            for (int threads : threadCounts) {
+                ParallelSolver solver = new ParallelSolver(level, threads).maxStates(maxStates);
+                Solver.Result result = solver.solve();
+                if (single == null) single = result;
+                print(level, String.valueOf(threads), solver, result, single);
+            }
+            int threads = threadCounts[threadCounts.length - 1];
+            ParallelSolver solver = new ParallelSolver(level, threads).maxStates(maxStates).offHeap(maxOffHeapBytes);
+            print(level, threads + "/off", solver, solver.solve(), single);
+        }
+    }
+
+    private static void print(Level level, String threads, ParallelSolver solver, Solver.Result result,
+                              Solver.Result single) {
+        System.out.printf("%-40s %8s %6d %10d %9d %12d %7.2fx %5.2f %8.1f %s%n",
+                abbreviate(level.title), threads, result.isSolved() ? result.solution.length : -1,
+                result.statesStored, result.elapsedMillis, (long) result.statesPerSecond(),
+                result.statesPerSecond() / single.statesPerSecond(), solver.loadFactor(), solver.bytesPerState(),
+                Arrays.equals(result.solution, single.solution) ? "yes" : "NO");
+    }
+
+    private static String abbreviate(String title) {
+        return title.length() <= 40 ? title : title.substring(0, 37) + "...";
+    }
+}
@@ -0,0 +1,73 @@
+package de.cdietze.quads.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a run written by {@link StateRunWriter} through a memory-mapped window that slides over the file, so runs of
+ * any size are read without copying them onto the heap.
+ */
+final class StateRunReader implements Closeable {
+
+    private static final long windowBytes = 64L << 20;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int words;
+    private final long[] current;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    StateRunReader(File path, int words) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        this.size = channel.size();
+        this.words = words;
+        this.current = new long[words];
+    }
+
+    /**
+     * Reads the next state into {@link #current()}.
+     *
+     * @return false at the end of the run
+     */
+    boolean next() throws IOException {
+        if (window == null ? size == 0 : windowStart + window.position() == size) return false;
+        int shared = (int) readVarLong();
+        current[shared] += readVarLong();
+        for (int i = shared + 1; i < words; i++) current[i] = readVarLong();
+        return true;
+    }
+
+    /**
+     * @return the state read last, which is overwritten by the next call to {@link #next()}
+     */
+    long[] current() { return current; }
+
+    @Override
+    public void close() throws IOException { file.close(); }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            long position = window == null ? 0 : windowStart + window.position();
+            if (position == size) throw new IOException("Truncated run");
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowBytes, size - position));
+            windowStart = position;
+        }
+        return window.get() & 0xFF;
+    }
+}
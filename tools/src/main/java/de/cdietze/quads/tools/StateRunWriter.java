@@ -0,0 +1,81 @@
+package de.cdietze.quads.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Writes a sorted run of distinct packed states, each padded to the same number of words, to a file.
+ * <p>
+ * Every state is stored as its difference to the one before: the number of leading words the two share, the
+ * difference of the first word that differs and the remaining words, all as variable-length integers. Sorted states
+ * of a level share most of their leading bits, so a state mostly takes a few bytes. {@link StateRunReader} reads the
+ * run back.
+ */
+final class StateRunWriter implements Closeable {
+
+    private final FileOutputStream file;
+    private final OutputStream out;
+    private final int words;
+    private final long[] previous;
+    private long count;
+
+    StateRunWriter(File path, int words) throws IOException {
+        this.file = new FileOutputStream(path);
+        this.out = new BufferedOutputStream(file, 1 << 16);
+        this.words = words;
+        this.previous = new long[words];
+    }
+
+    /**
+     * Appends the state at {@code offset}, which must be greater than the one written before.
+     */
+    void write(long[] states, int offset) throws IOException {
+        checkArgument(count == 0 || compare(states, offset, previous, 0, words) > 0, "States must be sorted and distinct");
+        int shared = 0;
+        while (shared < words - 1 && states[offset + shared] == previous[shared]) ++shared;
+        writeVarLong(shared);
+        writeVarLong(states[offset + shared] - previous[shared]);
+        for (int i = shared + 1; i < words; i++) writeVarLong(states[offset + i]);
+        System.arraycopy(states, offset, previous, 0, words);
+        ++count;
+    }
+
+    long count() { return count; }
+
+    /**
+     * Flushes the run and forces it to the disk, so it survives a crash once this returns.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+            file.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * The order of states in a run.
+     */
+    static int compare(long[] a, int aOffset, long[] b, int bOffset, int words) {
+        for (int i = 0; i < words; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) return a[aOffset + i] < b[bOffset + i] ? -1 : 1;
+        }
+        return 0;
+    }
+}
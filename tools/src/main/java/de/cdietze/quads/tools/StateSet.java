@@ -0,0 +1,41 @@
+package de.cdietze.quads.tools;
+
+/**
+ * The visited set of a layered breadth-first search that many threads insert into at once.
+ * <p>
+ * Every state offered while expanding a layer comes with a key, {@code parentPosition * 4 + move}, and a state keeps
+ * the smallest key it was offered with during the layer it was first found in. That is the key a sequential search
+ * expanding the layer in order would have found it with first, so {@link #drainLayer} can hand out the new layer in
+ * exactly the sequential order no matter how the work was split.
+ */
+interface StateSet {
+
+    /**
+     * Offers a state found while expanding the current layer.
+     */
+    void offer(long[] state, int offset, int wordCount, long hash, long key);
+
+    /**
+     * Ends the current layer and appends its new states to {@code next}, ordered by their keys.
+     */
+    void drainLayer(SearchLayer next);
+
+    /**
+     * Ends the current layer without collecting its states.
+     */
+    void startLayer();
+
+    long size();
+
+    long allocatedBytes();
+
+    /**
+     * @return the share of the index slots in use
+     */
+    double loadFactor();
+
+    /**
+     * @return whether states had to be dropped since the set could not grow any more, which makes the layer incomplete
+     */
+    boolean isFull();
+}
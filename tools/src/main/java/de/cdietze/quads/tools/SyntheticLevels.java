@@ -0,0 +1,51 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.PointUtils;
+import pythagoras.i.Dimension;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Generates large random levels to measure search and rules code with.
+ * <p>
+ * The player starts in the top left corner and the goal is in the bottom right one, behind a door with a single
+ * button. The rest of the board gets walls, pushers and expandos at random, keeping the fields next to the start free.
+ * The level is not necessarily solvable.
+ */
+public final class SyntheticLevels {
+    private SyntheticLevels() {}
+
+    public static Level generate(int width, int height, int pushers, int expandos, long seed) {
+        Random random = new Random(seed);
+        Dimension dim = new Dimension(width, height);
+        Level.Builder builder = new Level.Builder()
+                .dim(dim)
+                .title("Synthetic " + width + "x" + height + " #" + seed)
+                .playerStart(0)
+                .playerGoal(width * height - 1);
+        BitSet used = new BitSet();
+        used.set(0);
+        used.set(1);
+        used.set(width);
+        used.set(width * height - 1);
+        int door = PointUtils.toIndex(dim, width - 2, height - 1);
+        used.set(door);
+        builder.doorLink('A').doors.add(door);
+        builder.doorLink('A').buttons.add(take(random, dim, used));
+        for (int i = 0; i < pushers; i++) builder.pushEntity.add(take(random, dim, used));
+        for (int i = 0; i < expandos; i++) builder.expandoEntity.add(take(random, dim, used));
+        for (int i = width * height / 6; i > 0; i--) builder.walls.add(take(random, dim, used));
+        return builder.build();
+    }
+
+    private static int take(Random random, Dimension dim, BitSet used) {
+        int fieldIndex;
+        do {
+            fieldIndex = PointUtils.randomIndex(random, dim);
+        } while (used.get(fieldIndex));
+        used.set(fieldIndex);
+        return fieldIndex;
+    }
+}
@@ -0,0 +1,115 @@
+package de.cdietze.quads.tools;
+
+import de.cdietze.quads.core.Level;
+import de.cdietze.quads.core.LevelCodec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LevelPackTest {
+
+    /** The built-in levels as a text pack, relative to the tools module */
+    private static final File builtinPack = new File("../core/src/main/levels/levels.txt");
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<Level> levels = new ArrayList<>(LevelTextPacks.read(builtinPack));
+        levels.addAll(LevelTextPacks.read(new StringReader("Grüße, 世界\nS.a.A.β.Β.G\n\n\n")));
+        assertEquals(2, levels.get(levels.size() - 1).doorLinks.size());
+        File pack = folder.newFile("levels.pack");
+        try (LevelPackWriter writer = new LevelPackWriter(pack)) {
+            for (int i = 0; i < levels.size(); i++) writer.add(levels.get(i), i % 3 == 0 ? -1 : i * 7);
+        }
+
+        try (LevelPackReader reader = new LevelPackReader(pack)) {
+            assertEquals("levels", reader.name());
+            assertEquals(levels.size(), reader.size());
+            for (int i = 0; i < levels.size(); i++) {
+                Level expected = levels.get(i);
+                assertEquals(expected.title, reader.title(i));
+                assertEquals(expected.dim.width, reader.width(i));
+                assertEquals(expected.dim.height, reader.height(i));
+                assertEquals(expected.pushEntity.size(), reader.pusherCount(i));
+                assertEquals(expected.expandoEntity.size(), reader.expandoCount(i));
+                assertEquals(expected.doorLinks.size(), reader.doorLinkCount(i));
+                assertEquals(i % 3 == 0 ? -1 : i * 7, reader.solutionLength(i));
+                assertLevelEquals(expected, reader.level(i));
+            }
+        }
+    }
+
+    @Test
+    public void negativeLevelCount() throws IOException {
+        File pack = writeBuiltins();
+        patchInt(pack, 8, -1);
+        try {
+            new LevelPackReader(pack).close();
+            fail("Opened a pack with a negative level count");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void corruptEntries() throws IOException {
+        File pack = writeBuiltins();
+        int entry = LevelCodec.headerSize + LevelCodec.entrySize;
+        // The record of level 1 past the end of the file and the title of level 2 before the titles
+        patchInt(pack, entry + 8, Integer.MAX_VALUE);
+        patchInt(pack, entry + LevelCodec.entrySize + 12, -LevelCodec.entrySize);
+        try (LevelPackReader reader = new LevelPackReader(pack)) {
+            assertLevelEquals(LevelTextPacks.read(builtinPack).get(0), reader.level(0));
+            try {
+                reader.level(1);
+                fail("Decoded a record outside of the pack");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                reader.title(2);
+                fail("Read a title outside of the titles");
+            } catch (IllegalStateException expected) {
+            }
+        }
+    }
+
+    private File writeBuiltins() throws IOException {
+        File pack = folder.newFile();
+        try (LevelPackWriter writer = new LevelPackWriter(pack)) {
+            for (Level level : LevelTextPacks.read(builtinPack)) writer.add(level);
+        }
+        return pack;
+    }
+
+    private static void patchInt(File pack, long position, int value) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(pack, "rw")) {
+            file.seek(position);
+            file.writeInt(value);
+        }
+    }
+
+    private static void assertLevelEquals(Level expected, Level actual) {
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.dim, actual.dim);
+        assertEquals(expected.playerStart, actual.playerStart);
+        assertEquals(expected.playerGoal, actual.playerGoal);
+        assertEquals(expected.walls, actual.walls);
+        assertEquals(expected.pushEntity, actual.pushEntity);
+        assertEquals(expected.expandoEntity, actual.expandoEntity);
+        assertEquals(expected.doorLinks.size(), actual.doorLinks.size());
+        for (int i = 0; i < expected.doorLinks.size(); i++) {
+            assertEquals(expected.doorLinks.get(i).doors, actual.doorLinks.get(i).doors);
+            assertEquals(expected.doorLinks.get(i).buttons, actual.doorLinks.get(i).buttons);
+        }
+    }
+}